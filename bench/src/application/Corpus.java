@@ -0,0 +1,69 @@
+package application;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * The Corpus enum generates the inputs the benchmarks run over. Every kind is
+ * generated from a fixed seed, so runs on different machines and different
+ * commits see exactly the same bytes.
+ **/
+public enum Corpus {
+	// Every byte value equally likely, close to incompressible
+	UNIFORM {
+		@Override
+		void fill(byte[] data, Random random) {
+			random.nextBytes(data);
+		}
+	},
+	// English-like words with a skewed letter distribution
+	TEXT {
+		@Override
+		void fill(byte[] data, Random random) {
+			String[] words = { "the", "of", "and", "to", "in", "a", "is", "that", "for", "it", "as", "was", "with",
+					"be", "by", "on", "not", "he", "this", "are", "or", "his", "from", "at", "which", "but", "have",
+					"an", "had", "they", "you", "were", "their", "one", "all", "we", "can", "her", "has", "there",
+					"huffman", "compression", "ERROR", "WARN", "2024-01-01T00:00:00Z" };
+			int i = 0;
+			while (i < data.length) {
+				// Zipf-like choice: low indexes are picked much more often
+				int index = (int) (words.length * Math.pow(random.nextDouble(), 3));
+				byte[] word = words[index].getBytes(StandardCharsets.US_ASCII);
+				for (int j = 0; j < word.length && i < data.length; j++) {
+					data[i++] = word[j];
+				}
+				if (i < data.length) {
+					data[i++] = (byte) (random.nextInt(12) == 0 ? '\n' : ' ');
+				}
+			}
+		}
+	},
+	// Little-endian integers with small values, like a typical binary record file
+	BINARY {
+		@Override
+		void fill(byte[] data, Random random) {
+			for (int i = 0; i + 4 <= data.length; i += 4) {
+				int value = (int) Math.abs(random.nextGaussian() * 1000);
+				data[i] = (byte) value;
+				data[i + 1] = (byte) (value >>> 8);
+				data[i + 2] = (byte) (value >>> 16);
+				data[i + 3] = (byte) (value >>> 24);
+			}
+		}
+	},
+	// A single distinct byte value
+	SINGLE_SYMBOL {
+		@Override
+		void fill(byte[] data, Random random) {
+			java.util.Arrays.fill(data, (byte) 'a');
+		}
+	};
+
+	abstract void fill(byte[] data, Random random);
+
+	public byte[] generate(int size) {
+		byte[] data = new byte[size];
+		fill(data, new Random(42));
+		return data;
+	}
+}
@@ -0,0 +1,79 @@
+package application;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+
+	@Param({ "UNIFORM", "TEXT", "BINARY", "SINGLE_SYMBOL" })
+	Corpus corpus;
+
+	@Param({ "4096", "1048576", "16777216" })
+	int size;
+
+	private byte[] compressed;
+	private HuffmanTable table;
+	private HuffmanDecoder decoder;
+	private byte[] output;
+	private byte[] interleavedFrame;
+	private int interleavedType;
+	private int interleavedPayloadOffset;
+	private int interleavedPayloadSize;
+
+	@Setup
+	public void setup() throws IOException {
+		byte[] data = corpus.generate(size);
+		table = HuffmanTable.fromFrequencies(FrequencyCounter.count(data, 0, data.length));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new FileCompressor().compress(new ByteArrayInputStream(data), table, bytes);
+		compressed = bytes.toByteArray();
+		decoder = new HuffmanDecoder(table);
+		output = new byte[size];
+		ByteBuffer frame = FileCompressor.encodeBlock(data, size, table, HuffmanTable.MAX_CODE_LENGTH, true).frame;
+		interleavedFrame = Arrays.copyOf(frame.array(), frame.remaining());
+
+		// Original size, payload size, block type and checksum, then the payload, which ends the frame
+		ByteBuffer header = ByteBuffer.wrap(interleavedFrame);
+		if (header.getInt() != size) {
+			throw new IOException("Frame does not hold the whole corpus.");
+		}
+		interleavedPayloadSize = header.getInt();
+		interleavedType = header.get();
+		interleavedPayloadOffset = interleavedFrame.length - interleavedPayloadSize;
+	}
+
+	// Table decoding alone, from memory into memory
+	@Benchmark
+	public int decode() throws IOException {
+		return decoder.decode(new BitReader(compressed, 0, compressed.length), output, 0, size);
+	}
+
+	// Four streams decoded side by side; uniform data is stored raw and a single symbol as a run,
+	// so this also covers those paths
+	@Benchmark
+	public byte[] decodeInterleaved() throws IOException {
+		FileDecompressor.restoreBlock(interleavedType, decoder, interleavedFrame, interleavedPayloadOffset,
+				interleavedPayloadSize, output, size, true);
+		return output;
+	}
+
+	// The streaming entry point including decoder construction and buffering
+	@Benchmark
+	public long decompress() throws IOException {
+		return FileDecompressor.decompress(new ByteArrayInputStream(compressed), table, size,
+				OutputStream.nullOutputStream());
+	}
+}
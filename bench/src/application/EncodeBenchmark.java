@@ -0,0 +1,74 @@
+package application;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodeBenchmark {
+
+	@Param({ "UNIFORM", "TEXT", "BINARY", "SINGLE_SYMBOL" })
+	Corpus corpus;
+
+	@Param({ "4096", "1048576", "16777216" })
+	int size;
+
+	private byte[] data;
+	private HuffmanTable table;
+	// The same bytes off the heap, as the blocks of a mapped input file are
+	private Arena arena;
+	private MemorySegment segment;
+	private final FileCompressor compressor = new FileCompressor();
+
+	@Setup
+	public void setup() {
+		data = corpus.generate(size);
+		table = HuffmanTable.fromFrequencies(FrequencyCounter.count(data, 0, data.length));
+		arena = Arena.ofShared();
+		segment = arena.allocate(size);
+		MemorySegment.copy(data, 0, segment, ValueLayout.JAVA_BYTE, 0, size);
+	}
+
+	@TearDown
+	public void tearDown() {
+		arena.close();
+	}
+
+	// Bytes per second is ops/s * size
+	@Benchmark
+	public long compress() throws IOException {
+		return compressor.compress(new ByteArrayInputStream(data), table, OutputStream.nullOutputStream());
+	}
+
+	// The histogram every block is encoded with
+	@Benchmark
+	public int countFrequencies() {
+		return FrequencyCounter.count(data, 0, data.length)[0];
+	}
+
+	@Benchmark
+	public long countFrequenciesOffHeap() {
+		return FrequencyCounter.countSlice(segment)[0];
+	}
+
+	@Benchmark
+	public int encodeBlock() throws IOException {
+		return FileCompressor.encodeBlock(data, data.length, table, HuffmanTable.MAX_CODE_LENGTH, false).frame.remaining();
+	}
+
+	@Benchmark
+	public int encodeInterleavedBlock() throws IOException {
+		return FileCompressor.encodeBlock(data, data.length, table, HuffmanTable.MAX_CODE_LENGTH, true).frame.remaining();
+	}
+}
@@ -0,0 +1,43 @@
+package application;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeapBenchmark {
+
+	@Param({ "16", "256" })
+	int size;
+
+	private Node[] nodes;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		nodes = new Node[size];
+		for (int i = 0; i < size; i++) {
+			nodes[i] = new Node(random.nextInt(1_000_000), (char) i);
+		}
+	}
+
+	// Fill the heap with size nodes and empty it again, as buildHuffmanTree does
+	@Benchmark
+	public Node addThenDeleteAll() {
+		Heap heap = new Heap(256);
+		for (Node node : nodes) {
+			heap.addElement(node);
+		}
+		Node last = null;
+		while (!heap.isEmpty()) {
+			last = heap.deleteElement();
+		}
+		return last;
+	}
+}
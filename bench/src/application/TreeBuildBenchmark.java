@@ -0,0 +1,42 @@
+package application;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeBuildBenchmark {
+
+	@Param({ "UNIFORM", "TEXT", "BINARY", "SINGLE_SYMBOL" })
+	Corpus corpus;
+
+	private int[] frequencyTable;
+	private BinaryTree tree;
+
+	@Setup
+	public void setup() {
+		byte[] data = corpus.generate(1 << 20);
+		frequencyTable = FrequencyCounter.count(data, 0, data.length);
+		tree = FileCompressor.buildHuffmanTree(frequencyTable);
+	}
+
+	@Benchmark
+	public BinaryTree buildHuffmanTree() {
+		return FileCompressor.buildHuffmanTree(frequencyTable);
+	}
+
+	@Benchmark
+	public HuffmanTable buildCodeTable() {
+		return HuffmanTable.fromTree(tree);
+	}
+
+	@Benchmark
+	public HuffmanDecoder buildDecoder() {
+		return new HuffmanDecoder(HuffmanTable.fromTree(tree));
+	}
+}
@@ -0,0 +1,77 @@
+package application;
+
+import java.util.Arrays;
+
+/**
+ * An AdaptiveModel is the code table of a one-pass stream. Both the encoder
+ * and the decoder start from the same table, in which every byte has an 8-bit
+ * code, and feed every chunk of data they handle into update once the chunk
+ * is done. The counts are turned into a new table whenever enough data has
+ * been seen, so both sides always switch to the same table at the same point
+ * and no code lengths ever have to be stored in the stream.
+ **/
+class AdaptiveModel {
+
+	// The first rebuild happens this early; the gap then doubles up to the interval
+	private static final int FIRST_UPDATE = 4 * 1024;
+
+	private final int updateInterval;
+	private final int maxCodeLength;
+	private final int[] frequencies = new int[HuffmanTable.SYMBOLS];
+	private final int[] counts = new int[HuffmanTable.SYMBOLS];
+	private int nextUpdate;
+	private long seen;
+	private HuffmanTable table;
+	private HuffmanDecoder decoder;
+
+	AdaptiveModel(int updateInterval, int maxCodeLength) {
+		this.updateInterval = updateInterval;
+		this.maxCodeLength = maxCodeLength;
+		this.nextUpdate = Math.min(FIRST_UPDATE, updateInterval);
+		Arrays.fill(frequencies, 1);
+		this.table = HuffmanTable.fromFrequencies(frequencies, maxCodeLength);
+	}
+
+	HuffmanTable table() {
+		return table;
+	}
+
+	// Bytes left before the next rebuild; frames never cross a rebuild
+	int remaining() {
+		return (int) (nextUpdate - seen);
+	}
+
+	// Built only when first needed, so the encoder never pays for it
+	HuffmanDecoder decoder() {
+		if (decoder == null) {
+			decoder = new HuffmanDecoder(table);
+		}
+		return decoder;
+	}
+
+	/**
+	 * The update method counts the bytes of a finished chunk. Once nextUpdate
+	 * bytes have been counted since the last rebuild, the old frequencies are
+	 * halved and the new counts added, so recent data weighs most while older
+	 * data is slowly forgotten. Every byte keeps a frequency of at least one, so
+	 * bytes that have not been seen lately can still be encoded.
+	 **/
+	void update(byte[] data, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			counts[data[i] & 0xFF]++;
+		}
+		seen += length;
+		if (seen < nextUpdate) {
+			return;
+		}
+
+		for (int symbol = 0; symbol < frequencies.length; symbol++) {
+			frequencies[symbol] = Math.max(1, (frequencies[symbol] >>> 1) + counts[symbol]);
+			counts[symbol] = 0;
+		}
+		table = HuffmanTable.fromFrequencies(frequencies, maxCodeLength);
+		decoder = null;
+		seen = 0;
+		nextUpdate = Math.min(updateInterval, 2 * nextUpdate);
+	}
+}
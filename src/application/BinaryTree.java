@@ -10,7 +10,7 @@ public class BinaryTree implements Serializable {
 	BinaryTree right;
 	private boolean printed = false; // Flag to track if the character has been printed
 	private Node root;
-	private int frequency;
+	private long frequency;
 
 	public Node getRoot() {
 		return root;
@@ -28,7 +28,7 @@ public class BinaryTree implements Serializable {
 	}
 
 	// Constructor with character, Huffman code, and frequency
-	public BinaryTree(char ch, String huffCode, int frequency) {
+	public BinaryTree(char ch, String huffCode, long frequency) {
 		this.ch = ch;
 		this.huffCode = huffCode;
 		this.frequency = frequency; // Set frequency
@@ -81,11 +81,11 @@ public class BinaryTree implements Serializable {
 		this.right = right;
 	}
 
-	public int getFrequency() {
+	public long getFrequency() {
 		return frequency;
 	}
 
-	public void setFrequency(int frequency) {
+	public void setFrequency(long frequency) {
 		this.frequency = frequency;
 	}
 
@@ -0,0 +1,96 @@
+package application;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+public class BitReader {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final VarHandle LONG_BIG_ENDIAN = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+
+	private final InputStream in;
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	long bitBuffer;
+	int bitCount;
+
+	// Read the bits straight out of an array that is already in memory
+	public BitReader(byte[] data, int offset, int length) {
+		this.in = null;
+		this.buffer = data;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	public BitReader(InputStream in) {
+		this.in = in;
+		this.buffer = new byte[BUFFER_SIZE];
+	}
+
+	// Point an array reader at new data so it can be reused without allocating
+	void reset(byte[] data, int offset, int length) {
+		if (in != null) {
+			throw new IllegalStateException("Only an array reader can be reset.");
+		}
+		buffer = data;
+		position = offset;
+		limit = offset + length;
+		bitBuffer = 0;
+		bitCount = 0;
+	}
+
+	// Drop the next count bits, at most 56, to start decoding in the middle of a byte
+	void skipBits(int count) throws IOException {
+		refill();
+		if (count > bitCount) {
+			throw new EOFException("Cannot skip " + count + " of " + bitCount + " bits.");
+		}
+		bitCount -= count;
+	}
+
+	/**
+	 * The refill method tops up the 64-bit accumulator until it holds at least
+	 * 56 bits, so the decoder can look at a whole table index and most codes
+	 * without checking the input again. While eight bytes are left in the buffer
+	 * it reads them as one big-endian long and shifts in as many whole bytes as
+	 * fit, without a loop or a branch per byte. Otherwise it falls back to one
+	 * byte at a time, and near the end of the input it simply stops early and
+	 * leaves fewer bits behind.
+	 **/
+	void refill() throws IOException {
+		if (bitCount <= 55 && limit - position >= 8) {
+			int bits = ((63 - bitCount) >>> 3) << 3;
+			long word = (long) LONG_BIG_ENDIAN.get(buffer, position);
+			bitBuffer = (bitBuffer << bits) | (word >>> (64 - bits));
+			position += bits >>> 3;
+			bitCount += bits;
+			return;
+		}
+		while (bitCount <= 56) {
+			if (position == limit && !fillBuffer()) {
+				return;
+			}
+			bitBuffer = (bitBuffer << 8) | (buffer[position++] & 0xFF);
+			bitCount += 8;
+		}
+	}
+
+	private boolean fillBuffer() throws IOException {
+		if (in == null) {
+			return false;
+		}
+		int count = in.read(buffer, 0, buffer.length);
+		if (count <= 0) {
+			return false;
+		}
+		position = 0;
+		limit = count;
+		return true;
+	}
+}
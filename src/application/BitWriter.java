@@ -0,0 +1,99 @@
+package application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+public class BitWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final OutputStream out;
+	private final byte[] buffer;
+	private final ByteBuffer target;
+	private int position;
+	private long bitBuffer;
+	private int bitCount;
+	private long bytesWritten;
+
+	public BitWriter(OutputStream out) {
+		this.out = out;
+		this.buffer = new byte[BUFFER_SIZE];
+		this.target = null;
+	}
+
+	/**
+	 * This constructor makes a BitWriter that puts its bytes straight into
+	 * target, starting at its position, instead of collecting them for a
+	 * stream. Whole bytes are stored with one big-endian putLong, so target
+	 * needs 8 bytes of room past the last byte that will be written; the bytes
+	 * past the data are overwritten by later stores and never counted.
+	 **/
+	public BitWriter(ByteBuffer target) {
+		this.out = null;
+		this.buffer = null;
+		this.target = target;
+	}
+
+	/**
+	 * The writeBits method appends the lowest length bits of code to a 64-bit
+	 * accumulator. Whole bytes are only moved out of the accumulator when the new
+	 * code would not fit, which leaves fewer than 8 bits behind, so any code of up
+	 * to 56 bits can be written with a single shift and OR.
+	 **/
+	public void writeBits(long code, int length) throws IOException {
+		if (bitCount + length > 64) {
+			drain();
+		}
+		bitBuffer = (bitBuffer << length) | code;
+		bitCount += length;
+	}
+
+	private void drain() throws IOException {
+		if (target != null) {
+			int bytes = bitCount >>> 3;
+			if (bytes > 0) {
+				target.putLong(target.position(), bitBuffer << (64 - bitCount));
+				target.position(target.position() + bytes);
+				bytesWritten += bytes;
+				bitCount &= 7;
+			}
+			return;
+		}
+		while (bitCount >= 8) {
+			bitCount -= 8;
+			buffer[position++] = (byte) (bitBuffer >>> bitCount);
+			if (position == buffer.length) {
+				writeBuffer();
+			}
+		}
+	}
+
+	// Write the remaining bits, padding the last byte with zeros
+	public void flush() throws IOException {
+		drain();
+		if (bitCount > 0) {
+			writeBits(0, 8 - bitCount);
+			drain();
+		}
+		if (target == null) {
+			writeBuffer();
+			out.flush();
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		out.write(buffer, 0, position);
+		bytesWritten += position;
+		position = 0;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	// Bits written so far, including those still waiting in the buffer and the accumulator
+	public long getBitsWritten() {
+		return (bytesWritten + position) * 8 + bitCount;
+	}
+}
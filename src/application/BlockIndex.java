@@ -0,0 +1,240 @@
+package application;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class BlockIndex {
+
+	public static final int MAGIC = 0x48494458; // "HIDX"
+
+	private long[] offsets = new long[16];
+	private int[] originalSizes = new int[16];
+	private int[] compressedSizes = new int[16];
+	private long[] originalStarts = new long[16];
+	private int count;
+	private long originalLength;
+	private int checksum;
+	private boolean hasSeekIndex;
+	private long[] checkpointOffsets = new long[16];
+	private long[] checkpointBits = new long[16];
+	private int checkpointCount;
+
+	public void add(long offset, int originalSize, int compressedSize) {
+		if (count == offsets.length) {
+			offsets = Arrays.copyOf(offsets, count * 2);
+			originalSizes = Arrays.copyOf(originalSizes, count * 2);
+			compressedSizes = Arrays.copyOf(compressedSizes, count * 2);
+			originalStarts = Arrays.copyOf(originalStarts, count * 2);
+		}
+		offsets[count] = offset;
+		originalSizes[count] = originalSize;
+		compressedSizes[count] = compressedSize;
+		originalStarts[count] = originalLength;
+		originalLength += originalSize;
+		count++;
+	}
+
+	/**
+	 * The addCheckpoint method records that decoding can start at bitOffset,
+	 * counted in bits from the start of the .huff file, and that the byte
+	 * decoded there is the one at originalOffset in the original file.
+	 * Checkpoints have to be added in the order of their original offsets.
+	 **/
+	public void addCheckpoint(long originalOffset, long bitOffset) {
+		if (checkpointCount == checkpointOffsets.length) {
+			checkpointOffsets = Arrays.copyOf(checkpointOffsets, checkpointCount * 2);
+			checkpointBits = Arrays.copyOf(checkpointBits, checkpointCount * 2);
+		}
+		checkpointOffsets[checkpointCount] = originalOffset;
+		checkpointBits[checkpointCount] = bitOffset;
+		checkpointCount++;
+	}
+
+	public int getBlockCount() {
+		return count;
+	}
+
+	public long getOffset(int block) {
+		return offsets[block];
+	}
+
+	public int getOriginalSize(int block) {
+		return originalSizes[block];
+	}
+
+	public int getCompressedSize(int block) {
+		return compressedSizes[block];
+	}
+
+	// Where the block's data starts in the original file
+	public long getOriginalStart(int block) {
+		return originalStarts[block];
+	}
+
+	// Sum of the original sizes of all blocks
+	public long getOriginalLength() {
+		return originalLength;
+	}
+
+	// The block holding the byte at originalOffset, which must be below getOriginalLength
+	public int findBlock(long originalOffset) {
+		int block = Arrays.binarySearch(originalStarts, 0, count, originalOffset);
+		return block >= 0 ? block : -block - 2;
+	}
+
+	public boolean hasSeekIndex() {
+		return hasSeekIndex;
+	}
+
+	// Write the checkpoints after the entries, even if there are none
+	public void setSeekIndex(boolean hasSeekIndex) {
+		this.hasSeekIndex = hasSeekIndex;
+	}
+
+	public int getCheckpointCount() {
+		return checkpointCount;
+	}
+
+	public long getCheckpointOffset(int checkpoint) {
+		return checkpointOffsets[checkpoint];
+	}
+
+	public long getCheckpointBit(int checkpoint) {
+		return checkpointBits[checkpoint];
+	}
+
+	// The last checkpoint at or before originalOffset, or -1 if there is none
+	public int findCheckpoint(long originalOffset) {
+		int checkpoint = Arrays.binarySearch(checkpointOffsets, 0, checkpointCount, originalOffset);
+		return checkpoint >= 0 ? checkpoint : -checkpoint - 2;
+	}
+
+	// CRC32C of the whole original file
+	public int getChecksum() {
+		return checksum;
+	}
+
+	public void setChecksum(int checksum) {
+		this.checksum = checksum;
+	}
+
+	/**
+	 * The write method appends the block index after the last block of a .huff
+	 * file. For every block it stores where the block starts in the file, how
+	 * many original bytes it holds and how many bytes it takes up compressed,
+	 * followed by the CRC32C of the whole original file. With a
+	 * seek index, the number of checkpoints and the original offset and bit
+	 * offset of each come next; readers that do not know about them stop after
+	 * the checksum and never see them. It ends with the file position of the
+	 * index itself and a magic number, so a reader can find the index by
+	 * looking at the last 12 bytes of the file.
+	 **/
+	public void write(DataOutput out, long indexPosition) throws IOException {
+		out.writeInt(count);
+		for (int block = 0; block < count; block++) {
+			out.writeLong(offsets[block]);
+			out.writeInt(originalSizes[block]);
+			out.writeInt(compressedSizes[block]);
+		}
+		out.writeInt(checksum);
+		if (hasSeekIndex) {
+			out.writeInt(checkpointCount);
+			for (int checkpoint = 0; checkpoint < checkpointCount; checkpoint++) {
+				out.writeLong(checkpointOffsets[checkpoint]);
+				out.writeLong(checkpointBits[checkpoint]);
+			}
+		}
+		out.writeLong(indexPosition);
+		out.writeInt(MAGIC);
+	}
+
+	/**
+	 * The read method loads the block index from the end of a .huff file. It
+	 * first reads the last 12 bytes to find where the index starts and to check
+	 * the magic number, then reads all index entries in one go. Every entry is
+	 * checked to lie inside the file, to hold at most blockSize bytes and to be
+	 * no bigger than the compressor's largest frame for that many bytes, so a
+	 * damaged index is reported instead of sending readers to random positions
+	 * or into buffers that are too small.
+	 **/
+	public static BlockIndex read(FileChannel channel, int blockSize) throws IOException {
+		return read(channel, blockSize, false);
+	}
+
+	// Checkpoints are only read when asked for, since restoring a whole file never needs them
+	public static BlockIndex read(FileChannel channel, int blockSize, boolean withSeekIndex) throws IOException {
+		long fileSize = channel.size();
+		if (fileSize < 12) {
+			throw new IOException("Corrupt .huff file: no block index.");
+		}
+		ByteBuffer footer = readFully(channel, fileSize - 12, 12);
+		long indexPosition = footer.getLong();
+		if (footer.getInt() != MAGIC || indexPosition < 0 || indexPosition > fileSize - 16) {
+			throw new IOException("Corrupt .huff file: no block index.");
+		}
+
+		int indexSize = (int) Math.min(Integer.MAX_VALUE, fileSize - 12 - indexPosition);
+		DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(readFully(channel, indexPosition, indexSize).array()));
+		int count = in.readInt();
+		if (count < 0 || count > (indexSize - 8) / 16) {
+			throw new IOException("Corrupt block index: " + count + " blocks.");
+		}
+
+		BlockIndex index = new BlockIndex();
+		for (int block = 0; block < count; block++) {
+			long offset = in.readLong();
+			int originalSize = in.readInt();
+			int compressedSize = in.readInt();
+			if (offset < 0 || originalSize <= 0 || originalSize > blockSize || compressedSize <= 0
+					|| compressedSize > FileCompressor.maxFrameSize(originalSize)
+					|| offset + compressedSize > indexPosition) {
+				throw new IOException("Corrupt block index entry " + block + ".");
+			}
+			index.add(offset, originalSize, compressedSize);
+		}
+		index.setChecksum(in.readInt());
+		if (withSeekIndex) {
+			index.setSeekIndex(true);
+			int checkpoints = in.readInt();
+			if (checkpoints < 0 || checkpoints > in.available() / 16) {
+				throw new IOException("Corrupt seek index: " + checkpoints + " checkpoints.");
+			}
+			long previous = -1;
+			for (int checkpoint = 0; checkpoint < checkpoints; checkpoint++) {
+				long originalOffset = in.readLong();
+				long bitOffset = in.readLong();
+				if (originalOffset <= previous || originalOffset >= index.originalLength || bitOffset < 0
+						|| bitOffset >= indexPosition * 8) {
+					throw new IOException("Corrupt seek index entry " + checkpoint + ".");
+				}
+				index.addCheckpoint(originalOffset, bitOffset);
+				previous = originalOffset;
+			}
+		}
+		return index;
+	}
+
+	// Read length bytes starting at position without moving the channel
+	static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		return readFully(channel, position, ByteBuffer.allocate(length));
+	}
+
+	// Fill buffer up to its limit from position and flip it
+	static ByteBuffer readFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			int count = channel.read(buffer, position + buffer.position());
+			if (count < 0) {
+				throw new EOFException("Unexpected end of .huff file.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,225 @@
+package application;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A BlockPipeline runs the three stages of block coding on different threads
+ * so that reading, coding and writing overlap: one reader thread reads the
+ * next blocks while worker threads code the blocks already read and the
+ * calling thread writes the blocks that are done. The reader hands blocks to
+ * the workers through a bounded queue, and the workers put their results into
+ * a ring of capacity slots, one per block in flight, from which the writer
+ * takes them strictly in the order they were read.
+ *
+ * At most capacity blocks are in flight at any time: the reader has to get a
+ * permit before reading a block, and the writer gives it back only after the
+ * block is written. A slow disk on the writing side therefore stops the
+ * reader instead of letting finished blocks pile up, and slow workers stop it
+ * the same way, so memory stays bounded by capacity blocks whatever the
+ * speed of each stage.
+ **/
+class BlockPipeline {
+
+	interface Reader<T> {
+		// The next block, or null when the input is used up
+		T read() throws IOException;
+	}
+
+	interface Stage<T, R> {
+		R process(T block) throws IOException;
+	}
+
+	interface Writer<R> {
+		void write(R result) throws IOException;
+	}
+
+	private BlockPipeline() {
+	}
+
+	/**
+	 * The run method pushes every block from reader through stage on workers
+	 * threads and hands the results to writer in reading order on the calling
+	 * thread. It returns once the last result is written. If any stage throws,
+	 * the other threads are interrupted and the first exception is thrown from
+	 * here, so a failed pipeline never leaves threads behind, not even when the
+	 * calling thread is interrupted.
+	 **/
+	static <T, R> void run(Reader<T> reader, Stage<T, R> stage, Writer<R> writer, int workers, int capacity)
+			throws IOException {
+		if (workers <= 0 || capacity <= 0) {
+			throw new IllegalArgumentException("A pipeline needs workers and capacity: " + workers + ", " + capacity);
+		}
+		Pipeline<T, R> pipeline = new Pipeline<>(reader, stage, workers, capacity);
+		ExecutorService threads = Executors.newFixedThreadPool(workers + 1, runnable -> {
+			Thread thread = new Thread(runnable, "huffman-pipeline");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			threads.execute(pipeline::readAll);
+			for (int worker = 0; worker < workers; worker++) {
+				threads.execute(pipeline::processAll);
+			}
+			pipeline.writeAll(writer);
+		} finally {
+			// The stages may use memory that the caller releases as soon as this returns
+			FileCompressor.shutdownAndWait(threads);
+		}
+	}
+
+	private static class Pipeline<T, R> {
+		private final Reader<T> reader;
+		private final Stage<T, R> stage;
+		private final int workers;
+		private final Semaphore inFlight;
+		private final BlockingQueue<Job<T>> queue;
+		private final Object[] ring;
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition ready = lock.newCondition();
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+		private long blockCount = -1;
+
+		Pipeline(Reader<T> reader, Stage<T, R> stage, int workers, int capacity) {
+			this.reader = reader;
+			this.stage = stage;
+			this.workers = workers;
+			this.inFlight = new Semaphore(capacity);
+			this.queue = new ArrayBlockingQueue<>(capacity + workers);
+			this.ring = new Object[capacity];
+		}
+
+		// Reader thread: number the blocks and queue them, then one end marker per worker
+		void readAll() {
+			try {
+				long sequence = 0;
+				while (true) {
+					inFlight.acquire();
+					T block = reader.read();
+					if (block == null) {
+						break;
+					}
+					queue.put(new Job<>(sequence++, block));
+				}
+				lock.lock();
+				try {
+					blockCount = sequence;
+					ready.signalAll();
+				} finally {
+					lock.unlock();
+				}
+				for (int worker = 0; worker < workers; worker++) {
+					queue.put(new Job<>(-1, null));
+				}
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+
+		// Worker thread: code blocks until the end marker and put each result in its slot
+		void processAll() {
+			try {
+				while (true) {
+					Job<T> job = queue.take();
+					if (job.block == null) {
+						return;
+					}
+					R result = stage.process(job.block);
+					lock.lock();
+					try {
+						ring[slot(job.sequence)] = result;
+						ready.signalAll();
+					} finally {
+						lock.unlock();
+					}
+				}
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+
+		// Calling thread: write results in order until the reader's block count is reached
+		@SuppressWarnings("unchecked")
+		void writeAll(Writer<R> writer) throws IOException {
+			for (long next = 0;; next++) {
+				R result;
+				lock.lock();
+				try {
+					while (ring[slot(next)] == null && failure.get() == null && blockCount != next) {
+						ready.await();
+					}
+					rethrow();
+					if (ring[slot(next)] == null) {
+						return;
+					}
+					result = (R) ring[slot(next)];
+					ring[slot(next)] = null;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for a block.");
+				} finally {
+					lock.unlock();
+				}
+				writer.write(result);
+				inFlight.release();
+			}
+		}
+
+		private int slot(long sequence) {
+			return (int) (sequence % ring.length);
+		}
+
+		private void fail(Throwable e) {
+			if (e instanceof InterruptedException && failure.get() != null) {
+				return;
+			}
+			failure.compareAndSet(null, e);
+			lock.lock();
+			try {
+				ready.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void rethrow() throws IOException {
+			Throwable e = failure.get();
+			if (e == null) {
+				return;
+			}
+			if (e instanceof IOException) {
+				throw (IOException) e;
+			}
+			if (e instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) e).getCause();
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException) e;
+			}
+			if (e instanceof Error) {
+				throw (Error) e;
+			}
+			throw new IOException(e);
+		}
+	}
+
+	// A block and its place in reading order; a job without a block ends a worker
+	private static class Job<T> {
+		final long sequence;
+		final T block;
+
+		Job(long sequence, T block) {
+			this.sequence = sequence;
+			this.block = block;
+		}
+	}
+}
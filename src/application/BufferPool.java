@@ -0,0 +1,73 @@
+package application;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A BufferPool hands out a fixed number of ByteBuffers and takes them back
+ * when their user is done, so the stages of a BlockPipeline reuse the same
+ * few buffers for the whole file instead of allocating one per block. Asking
+ * for a buffer when all of them are in use waits until one is released, which
+ * is how a fast stage is held back by a slow one. Buffers are only allocated
+ * the first time they are needed, and one that turns out too small for a
+ * request is replaced by a bigger one.
+ **/
+class BufferPool {
+
+	private final BlockingQueue<ByteBuffer> free;
+	private final int buffers;
+	private final int bufferSize;
+	private final boolean direct;
+	private int created;
+
+	BufferPool(int buffers, int bufferSize, boolean direct) {
+		if (buffers <= 0 || bufferSize <= 0) {
+			throw new IllegalArgumentException("A pool needs at least one non-empty buffer: " + buffers + " x "
+					+ bufferSize);
+		}
+		this.free = new ArrayBlockingQueue<>(buffers);
+		this.buffers = buffers;
+		this.bufferSize = bufferSize;
+		this.direct = direct;
+	}
+
+	ByteBuffer take() throws IOException {
+		return take(bufferSize);
+	}
+
+	// A cleared buffer of at least minimumSize bytes, waiting while all buffers are in use
+	ByteBuffer take(int minimumSize) throws IOException {
+		ByteBuffer buffer = free.poll();
+		if (buffer == null && !allocate()) {
+			try {
+				buffer = free.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a buffer.");
+			}
+		}
+		if (buffer == null || buffer.capacity() < minimumSize) {
+			int size = Math.max(bufferSize, minimumSize);
+			buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+		}
+		return buffer.clear();
+	}
+
+	void release(ByteBuffer buffer) {
+		if (!free.offer(buffer)) {
+			throw new IllegalStateException("More buffers released than taken.");
+		}
+	}
+
+	// Count one more buffer as created unless all of them already exist
+	private synchronized boolean allocate() {
+		if (created == buffers) {
+			return false;
+		}
+		created++;
+		return true;
+	}
+}
@@ -0,0 +1,100 @@
+package application;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.zip.CRC32C;
+
+/**
+ * Checksums holds the CRC32C helpers of the .huff format. CRC32C is computed
+ * by java.util.zip.CRC32C, which the JVM turns into the CPU's CRC instructions
+ * where they exist, so checking every block costs little next to decoding it.
+ **/
+class Checksums {
+
+	// CRC32C polynomial in reversed bit order
+	private static final int POLYNOMIAL = 0x82F63B78;
+	// Small enough to stay in the L1 cache between the copy and the checksum
+	static final int SCRATCH_SIZE = 16 * 1024;
+
+	private Checksums() {
+	}
+
+	static int crc32c(byte[] data, int offset, int length) {
+		CRC32C crc = new CRC32C();
+		crc.update(data, offset, length);
+		return (int) crc.getValue();
+	}
+
+	static int crc32c(MemorySegment data) {
+		CRC32C crc = new CRC32C();
+		update(crc, data, new byte[SCRATCH_SIZE]);
+		return (int) crc.getValue();
+	}
+
+	// Segments of a shared Arena cannot be handed to CRC32C as buffers, so they pass through scratch
+	static void update(CRC32C crc, MemorySegment data, byte[] scratch) {
+		for (long offset = 0; offset < data.byteSize(); offset += scratch.length) {
+			int length = (int) Math.min(scratch.length, data.byteSize() - offset);
+			MemorySegment.copy(data, ValueLayout.JAVA_BYTE, offset, scratch, 0, length);
+			crc.update(scratch, 0, length);
+		}
+	}
+
+	/**
+	 * The combine method returns the CRC32C of two pieces of data joined
+	 * together from the CRC32C of each piece and the length of the second one,
+	 * without looking at the data again. Appending length2 zero bytes to the
+	 * first piece is a linear map on its CRC, which is applied by repeatedly
+	 * squaring the 32x32 bit matrix for one zero bit, as zlib's crc32_combine
+	 * does. Blocks that were checked on different threads can therefore be
+	 * folded into the checksum of the whole file in order.
+	 **/
+	static int combine(int crc1, int crc2, long length2) {
+		if (length2 <= 0) {
+			return crc1;
+		}
+
+		int[] even = new int[32];
+		int[] odd = new int[32];
+		odd[0] = POLYNOMIAL;
+		for (int n = 1, row = 1; n < 32; n++, row <<= 1) {
+			odd[n] = row;
+		}
+		square(even, odd); // two zero bits
+		square(odd, even); // four zero bits
+
+		do {
+			square(even, odd);
+			if ((length2 & 1) != 0) {
+				crc1 = times(even, crc1);
+			}
+			length2 >>= 1;
+			if (length2 == 0) {
+				break;
+			}
+			square(odd, even);
+			if ((length2 & 1) != 0) {
+				crc1 = times(odd, crc1);
+			}
+			length2 >>= 1;
+		} while (length2 != 0);
+
+		return crc1 ^ crc2;
+	}
+
+	private static int times(int[] matrix, int vector) {
+		int sum = 0;
+		for (int i = 0; vector != 0; i++, vector >>>= 1) {
+			if ((vector & 1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+		return sum;
+	}
+
+	private static void square(int[] result, int[] matrix) {
+		for (int n = 0; n < 32; n++) {
+			result[n] = times(matrix, matrix[n]);
+		}
+	}
+}
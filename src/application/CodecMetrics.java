@@ -0,0 +1,201 @@
+package application;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CodecMetrics collects where the time of one compression or decompression
+ * went. Every phase of the codec is timed where it happens, on whichever
+ * thread runs it, and its time, the bytes it handled and the heap memory it
+ * allocated are added to the totals of that phase. Since the phases of
+ * different blocks run side by side, the phase times add up to more than the
+ * elapsed time on several cores; they show how much work each phase is, and
+ * the elapsed time shows how long the user waited.
+ *
+ * Every timed phase is also a PhaseEvent for JDK Flight Recorder, so a
+ * recording of a running application shows the same phases per block on a
+ * timeline. When no recording is running the events cost next to nothing.
+ *
+ * For compression the entropy of every block's histogram is added up next to
+ * the bits the codes actually used, which shows how close the codes came to
+ * the best a per-block code could do.
+ **/
+public class CodecMetrics {
+
+	public enum Phase {
+		HISTOGRAM("Histogram"), TREE("Tree build"), TABLE("Table build"), ENCODE("Encode"), DECODE("Decode"),
+		CHECKSUM("Checksum"), IO_WAIT("I/O wait");
+
+		private final String label;
+
+		Phase(String label) {
+			this.label = label;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	// Null where the JVM cannot count the bytes allocated by a thread
+	private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+	private final LongAdder[] nanos = adders();
+	private final LongAdder[] bytes = adders();
+	private final LongAdder[] allocated = adders();
+	private final LongAdder[] counts = adders();
+	private final LongAdder entropyBits = new LongAdder();
+	private final LongAdder codedBits = new LongAdder();
+	private final LongAdder codedBytes = new LongAdder();
+	private volatile long originalSize;
+	private volatile long compressedSize;
+	private volatile long elapsedNanos;
+
+	/**
+	 * The begin method starts timing a phase on the current thread. The
+	 * returned event carries the start time and allocation count until end
+	 * is called with it on the same thread.
+	 **/
+	public PhaseEvent begin(Phase phase) {
+		PhaseEvent event = new PhaseEvent();
+		event.phase = phase.getLabel();
+		event.kind = phase;
+		event.startAllocated = allocatedBytes();
+		event.startNanos = System.nanoTime();
+		event.begin();
+		return event;
+	}
+
+	// Add the time and allocation since begin to the phase; bytes is what the phase worked on
+	public void end(PhaseEvent event, long bytes) {
+		event.end();
+		long time = System.nanoTime() - event.startNanos;
+		long endAllocated = allocatedBytes();
+		// Virtual threads may not count their allocations
+		long allocation = event.startAllocated < 0 || endAllocated < 0 ? 0 : endAllocated - event.startAllocated;
+		int phase = event.kind.ordinal();
+		nanos[phase].add(time);
+		this.bytes[phase].add(bytes);
+		allocated[phase].add(allocation);
+		counts[phase].increment();
+		if (event.shouldCommit()) {
+			event.bytes = bytes;
+			event.allocated = allocation;
+			event.commit();
+		}
+	}
+
+	// One Huffman coded block: the entropy of its histogram and the bits its codes took
+	void addCodedBlock(int[] counts, int length, long bits) {
+		entropyBits.add(Math.round(FileCompressor.entropyBits(counts, length)));
+		codedBits.add(bits);
+		codedBytes.add(length);
+	}
+
+	void setSizes(long originalSize, long compressedSize, long elapsedNanos) {
+		this.originalSize = originalSize;
+		this.compressedSize = compressedSize;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public long getNanos(Phase phase) {
+		return nanos[phase.ordinal()].sum();
+	}
+
+	public long getBytes(Phase phase) {
+		return bytes[phase.ordinal()].sum();
+	}
+
+	// Heap bytes allocated during the phase, 0 where the JVM cannot tell
+	public long getAllocatedBytes(Phase phase) {
+		return allocated[phase.ordinal()].sum();
+	}
+
+	public long getCount(Phase phase) {
+		return counts[phase.ordinal()].sum();
+	}
+
+	public long getOriginalSize() {
+		return originalSize;
+	}
+
+	public long getCompressedSize() {
+		return compressedSize;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	// Original bytes per second of elapsed time
+	public double getBytesPerSecond() {
+		return elapsedNanos == 0 ? 0 : originalSize * 1e9 / elapsedNanos;
+	}
+
+	// Bits per byte the codes used in Huffman coded blocks, 0 if there were none
+	public double getAverageCodeLength() {
+		long length = codedBytes.sum();
+		return length == 0 ? 0 : (double) codedBits.sum() / length;
+	}
+
+	// Entropy in bits per byte of the Huffman coded blocks, the lower bound for the above
+	public double getEntropy() {
+		long length = codedBytes.sum();
+		return length == 0 ? 0 : (double) entropyBits.sum() / length;
+	}
+
+	/**
+	 * The toString method lays the metrics out as a small table with one line
+	 * per phase that was used, giving its total time, share of all phase time,
+	 * throughput and allocation, followed by the sizes, the overall speed and
+	 * the average code length next to the entropy.
+	 **/
+	@Override
+	public String toString() {
+		long total = 0;
+		for (Phase phase : Phase.values()) {
+			total += getNanos(phase);
+		}
+
+		StringBuilder text = new StringBuilder();
+		text.append(String.format("%-12s %10s %6s %10s %10s%n", "PHASE", "TIME (ms)", "SHARE", "MB/s", "ALLOC (KB)"));
+		for (Phase phase : Phase.values()) {
+			long time = getNanos(phase);
+			if (getCount(phase) == 0) {
+				continue;
+			}
+			text.append(String.format("%-12s %10.1f %5.1f%% %10.1f %10d%n", phase.getLabel(), time / 1e6,
+					total == 0 ? 0.0 : 100.0 * time / total,
+					time == 0 ? 0.0 : getBytes(phase) * 1e9 / time / (1024 * 1024), getAllocatedBytes(phase) / 1024));
+		}
+		text.append(String.format("%nORIGINAL: %d bytes, COMPRESSED: %d bytes%n", originalSize, compressedSize));
+		text.append(String.format("ELAPSED: %.1f ms, %.1f MB/s%n", elapsedNanos / 1e6,
+				getBytesPerSecond() / (1024 * 1024)));
+		if (codedBytes.sum() > 0) {
+			text.append(String.format("AVERAGE CODE LENGTH: %.4f bits, ENTROPY: %.4f bits%n", getAverageCodeLength(),
+					getEntropy()));
+		}
+		return text.toString();
+	}
+
+	// Bytes allocated by the current thread so far, or -1 if unknown
+	private static long allocatedBytes() {
+		return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+	}
+
+	private static com.sun.management.ThreadMXBean allocationCounter() {
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+				&& threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+			return threads;
+		}
+		return null;
+	}
+
+	private static LongAdder[] adders() {
+		LongAdder[] adders = new LongAdder[Phase.values().length];
+		for (int i = 0; i < adders.length; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+}
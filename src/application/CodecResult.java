@@ -0,0 +1,77 @@
+package application;
+
+import java.nio.file.Path;
+
+public class CodecResult {
+
+	private final Path input;
+	private final Path output;
+	private final long originalSize;
+	private final long compressedSize;
+	private final long elapsedNanos;
+	private final BinaryTree huffmanTree;
+	private final HuffmanTable huffmanTable;
+	private final CodecMetrics metrics;
+
+	public CodecResult(Path input, Path output, long originalSize, long compressedSize, long elapsedNanos,
+			BinaryTree huffmanTree, HuffmanTable huffmanTable) {
+		this(input, output, originalSize, compressedSize, elapsedNanos, huffmanTree, huffmanTable, null);
+	}
+
+	public CodecResult(Path input, Path output, long originalSize, long compressedSize, long elapsedNanos,
+			BinaryTree huffmanTree, HuffmanTable huffmanTable, CodecMetrics metrics) {
+		this.input = input;
+		this.output = output;
+		this.originalSize = originalSize;
+		this.compressedSize = compressedSize;
+		this.elapsedNanos = elapsedNanos;
+		this.huffmanTree = huffmanTree;
+		this.huffmanTable = huffmanTable;
+		this.metrics = metrics;
+	}
+
+	public Path getInput() {
+		return input;
+	}
+
+	public Path getOutput() {
+		return output;
+	}
+
+	public long getOriginalSize() {
+		return originalSize;
+	}
+
+	public long getCompressedSize() {
+		return compressedSize;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	// Only set after compressing with a shared table
+	public BinaryTree getHuffmanTree() {
+		return huffmanTree;
+	}
+
+	// Only set when one code table was used for the whole file
+	public HuffmanTable getHuffmanTable() {
+		return huffmanTable;
+	}
+
+	// Phase timings of a .huff file operation; null for streams
+	public CodecMetrics getMetrics() {
+		return metrics;
+	}
+
+	public double getCompressionRatio() {
+		return originalSize == 0 ? 0 : (double) compressedSize / originalSize;
+	}
+
+	@Override
+	public String toString() {
+		return "CodecResult [input=" + input + ", output=" + output + ", originalSize=" + originalSize
+				+ ", compressedSize=" + compressedSize + ", elapsedNanos=" + elapsedNanos + "]";
+	}
+}
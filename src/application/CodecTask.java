@@ -0,0 +1,67 @@
+package application;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javafx.concurrent.Task;
+
+/**
+ * A CodecTask compresses or decompresses one file off the JavaFX application
+ * thread, so the window stays responsive while big files are worked on. It
+ * uses its own copy of the GUI's codec with a ProgressListener that turns
+ * every finished block into the task's progress and into a message with the
+ * current speed in MB/s and the estimated time left, both of which the GUI
+ * binds to its progress bar and status label.
+ *
+ * Cancelling the task interrupts its thread, which stops the codec at the
+ * next block it waits for or writes. A task that is cancelled or fails
+ * deletes the half-written output file, so only complete files are left
+ * behind.
+ **/
+public class CodecTask extends Task<CodecResult> {
+
+	private final HuffmanCodec codec;
+	private final HuffmanGUI.OperationType operation;
+	private final Path input;
+	private long start;
+
+	public CodecTask(HuffmanCodec settings, HuffmanGUI.OperationType operation, Path input) {
+		this.codec = new HuffmanCodec(settings);
+		this.operation = operation;
+		this.input = input;
+	}
+
+	public HuffmanGUI.OperationType getOperation() {
+		return operation;
+	}
+
+	public Path getInput() {
+		return input;
+	}
+
+	@Override
+	protected CodecResult call() throws Exception {
+		start = System.nanoTime();
+		codec.setProgressListener(this::progress);
+		updateMessage(input.getFileName() + ": starting");
+		Path output = operation == HuffmanGUI.OperationType.COMPRESSOR ? HuffmanCodec.compressedPath(input)
+				: codec.decompressedPath(input);
+		try {
+			return operation == HuffmanGUI.OperationType.COMPRESSOR ? codec.compress(input, output)
+					: codec.decompress(input, output);
+		} catch (Exception e) {
+			Files.deleteIfExists(output);
+			throw e;
+		}
+	}
+
+	// Called on the codec's threads; updateProgress and updateMessage hand over to the FX thread
+	private void progress(long bytesDone, long bytesTotal) {
+		updateProgress(bytesDone, bytesTotal);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		double bytesPerSecond = seconds > 0 ? bytesDone / seconds : 0;
+		long secondsLeft = bytesPerSecond > 0 ? (long) ((bytesTotal - bytesDone) / bytesPerSecond) : 0;
+		updateMessage(String.format("%s: %.1f MB/s, %d:%02d left", input.getFileName(),
+				bytesPerSecond / (1024 * 1024), secondsLeft / 60, secondsLeft % 60));
+	}
+}
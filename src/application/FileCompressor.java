@@ -1,13 +1,37 @@
 package application;
 
 import java.io.*;
-import java.util.*;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.BufferedInputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class FileCompressor {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
 	private BinaryTree huffmanTree;
+	private HuffmanTable huffmanTable;
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private boolean sharedTable = true;
+	private int maxCodeLength = HuffmanTable.MAX_CODE_LENGTH;
+	private HuffmanDictionary dictionary;
+	private boolean interleaved;
+	private boolean offHeap;
+	private int checkpointInterval;
+	private ProgressListener progressListener;
+	private CodecMetrics metrics;
 
 	public BinaryTree getHuffmanTree() {
 		return huffmanTree;
@@ -17,6 +41,106 @@ public class FileCompressor {
 		this.huffmanTree = huffmanTree;
 	}
 
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public void setBlockSize(int blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		this.blockSize = blockSize;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	public boolean isSharedTable() {
+		return sharedTable;
+	}
+
+	// Use one code table for the whole file instead of one per block
+	public void setSharedTable(boolean sharedTable) {
+		this.sharedTable = sharedTable;
+	}
+
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	public void setMaxCodeLength(int maxCodeLength) {
+		if (maxCodeLength < 8 || maxCodeLength > HuffmanTable.MAX_CODE_LENGTH) {
+			throw new IllegalArgumentException(
+					"Maximum code length must be between 8 and " + HuffmanTable.MAX_CODE_LENGTH + ": " + maxCodeLength);
+		}
+		this.maxCodeLength = maxCodeLength;
+	}
+
+	public HuffmanTable getHuffmanTable() {
+		return huffmanTable;
+	}
+
+	public boolean isInterleaved() {
+		return interleaved;
+	}
+
+	// Split every block into four bitstreams that can be decoded side by side
+	public void setInterleaved(boolean interleaved) {
+		this.interleaved = interleaved;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	// Read the blocks straight from the memory-mapped input file instead of copying them to the heap
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	// Write a seek index with a checkpoint every checkpointInterval original bytes; 0 writes none
+	public void setCheckpointInterval(int checkpointInterval) {
+		if (checkpointInterval < 0) {
+			throw new IllegalArgumentException("Checkpoint interval must not be negative: " + checkpointInterval);
+		}
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	public ProgressListener getProgressListener() {
+		return progressListener;
+	}
+
+	// Told about every block written by compressFile; null turns it off
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	// Phase timings of the last compressFile call, or null before the first one
+	public CodecMetrics getMetrics() {
+		return metrics;
+	}
+
+	public HuffmanDictionary getDictionary() {
+		return dictionary;
+	}
+
+	// Encode with a pre-trained table instead of counting the file; null turns it off
+	public void setDictionary(HuffmanDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
 	/**
 	 * The buildHuffmanTree method creates a Huffman tree using a table that shows
 	 * how often each character appears. It starts by putting each character with a
@@ -29,9 +153,14 @@ public class FileCompressor {
 	 * Finally, the method converts the nodes into a BinaryTree structure using the
 	 * convertToBinaryTree method, which organizes the nodes into a format suitable
 	 * for encoding. This tree assigns shorter binary codes to more frequent
-	 * characters.
+	 * characters. The frequencies are counted in longs, so a byte may occur more
+	 * than 2^31 times in a big file.
 	 **/
 	public static BinaryTree buildHuffmanTree(int[] frequencyTable) {
+		return buildHuffmanTree(Arrays.stream(frequencyTable).asLongStream().toArray());
+	}
+
+	public static BinaryTree buildHuffmanTree(long[] frequencyTable) {
 		Heap heap = new Heap(256);
 		for (int i = 0; i < frequencyTable.length; i++) {
 			if (frequencyTable[i] > 0) {
@@ -51,7 +180,7 @@ public class FileCompressor {
 		return convertToBinaryTree(heap.deleteElement(), frequencyTable);
 	}
 
-	private static BinaryTree convertToBinaryTree(Node root, int[] frequencyTable) {
+	private static BinaryTree convertToBinaryTree(Node root, long[] frequencyTable) {
 		if (root == null)
 			return null;
 
@@ -61,90 +190,621 @@ public class FileCompressor {
 		return tree;
 	}
 
-	// Generate Huffman codes
-	private void generateHuffmanCodes(BinaryTree tree, StringBuilder code) {
-		if (tree == null)
-			return;
+	/**
+	 * The countFrequencies method is the first of the two passes over the input.
+	 * It counts how often each byte value appears, using a FrequencyCounter that
+	 * maps the file into memory and counts slices of it on several threads. The
+	 * bytes are counted as they are, without decoding them as characters, so
+	 * every one of the 256 byte values is counted exactly.
+	 **/
+	public static long[] countFrequencies(String inputFilePath) throws IOException {
+		return countFrequencies(inputFilePath, Runtime.getRuntime().availableProcessors());
+	}
 
-		if (tree.left == null && tree.right == null) {
-			tree.huffCode = code.toString();
-			return;
-		}
+	public static long[] countFrequencies(String inputFilePath, int parallelism) throws IOException {
+		return FrequencyCounter.count(Path.of(inputFilePath), parallelism);
+	}
+
+	public static long[] countFrequencies(InputStream inputStream) throws IOException {
+		long[] frequencyTable = new long[HuffmanTable.SYMBOLS];
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int count;
 
-		generateHuffmanCodes(tree.left, code.append('0'));
-		code.deleteCharAt(code.length() - 1);
-		generateHuffmanCodes(tree.right, code.append('1'));
-		code.deleteCharAt(code.length() - 1);
+		while ((count = inputStream.read(buffer)) != -1) {
+			for (int i = 0; i < count; i++) {
+				frequencyTable[buffer[i] & 0xFF]++;
+			}
+		}
+		return frequencyTable;
 	}
 
 	/**
 	 * The compress method compresses a file's contents into a byte array using
 	 * Huffman coding, making it suitable for scenarios where compressed data needs
-	 * to be processed in memory. It begins by creating a ByteArrayOutputStream to
-	 * store the compressed output and a BufferedInputStream to read the file
-	 * efficiently. The method reads each byte from the input file, retrieves its
-	 * corresponding Huffman code, and processes the code bit by bit. Bits are
-	 * accumulated in a temporary buffer (bitBuffer) until it forms a full byte,
-	 * which is then written to the output stream. If any bits remain after
-	 * processing all bytes, they are padded with zeros and written as the final
-	 * byte.
+	 * to be processed in memory. It is a thin wrapper around the streaming
+	 * compress method below, writing into a ByteArrayOutputStream, so it is
+	 * limited to results below 2 GB; bigger files go through the streaming or
+	 * channel methods.
 	 **/
 
 	public byte[] compress(String inputFilePath, BinaryTree huffmanTree) throws IOException {
 		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		compress(inputFilePath, huffmanTree, byteArrayOutputStream);
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	public long compress(String inputFilePath, BinaryTree huffmanTree, WritableByteChannel channel)
+			throws IOException {
+		return compress(inputFilePath, huffmanTree, Channels.newOutputStream(channel));
+	}
+
+	public long compress(String inputFilePath, BinaryTree huffmanTree, OutputStream outputStream)
+			throws IOException {
+		return compress(inputFilePath, HuffmanTable.fromTree(huffmanTree), outputStream);
+	}
+
+	public long compress(String inputFilePath, HuffmanTable table, OutputStream outputStream) throws IOException {
+		try (InputStream inputStream = new FileInputStream(inputFilePath)) {
+			return compress(inputStream, table, outputStream);
+		}
+	}
+
+	/**
+	 * The streaming compress method is the second pass over the input. Before
+	 * reading anything it uses a flat table holding the code bits and code length
+	 * of every byte, so encoding a byte is a single table lookup instead of a
+	 * search through the tree. The input is then read in fixed-size chunks and
+	 * every code is appended to a BitWriter, which collects the bits in a 64-bit
+	 * accumulator and writes them to the caller's stream through its own
+	 * fixed-size buffer. Memory use therefore stays the same no matter how big
+	 * the input is. If any bits remain after processing all bytes, they are
+	 * padded with zeros and written as the final byte. The stream is flushed but
+	 * not closed, and the number of compressed bytes is returned.
+	 **/
+	public long compress(InputStream inputStream, HuffmanTable table, OutputStream outputStream)
+			throws IOException {
+		BitWriter writer = new BitWriter(outputStream);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int count;
+
+		while ((count = inputStream.read(buffer)) != -1) {
+			encode(buffer, 0, count, table, writer);
+		}
+		writer.flush();
+
+		return writer.getBytesWritten();
+	}
+
+	/**
+	 * The encode method appends the code of every byte in buffer[offset, offset +
+	 * count) to writer. Because no code is longer than MAX_CODE_LENGTH (15 bits),
+	 * three codes always fit in 45 bits, so the codes of three bytes are joined
+	 * into one value and handed to the BitWriter in a single call. A byte
+	 * without a code has a length of 0 and is reported as missing.
+	 **/
+	static void encode(byte[] buffer, int offset, int count, HuffmanTable table, BitWriter writer)
+			throws IOException {
+		long[] codes = table.codes();
+		int[] lengths = table.lengths();
+		int end = offset + count;
+		int i = offset;
+
+		for (; i + 3 <= end; i += 3) {
+			int s0 = buffer[i] & 0xFF;
+			int s1 = buffer[i + 1] & 0xFF;
+			int s2 = buffer[i + 2] & 0xFF;
+			int l1 = lengths[s1];
+			int l2 = lengths[s2];
+			if (lengths[s0] == 0 || l1 == 0 || l2 == 0) {
+				throw missingSymbol(lengths[s0] == 0 ? s0 : l1 == 0 ? s1 : s2);
+			}
+			long code = (((codes[s0] << l1) | codes[s1]) << l2) | codes[s2];
+			writer.writeBits(code, lengths[s0] + l1 + l2);
+		}
+		for (; i < end; i++) {
+			int symbol = buffer[i] & 0xFF;
+			if (lengths[symbol] == 0) {
+				throw missingSymbol(symbol);
+			}
+			writer.writeBits(codes[symbol], lengths[symbol]);
+		}
+	}
+
+	// The same for data in a segment, on or off the heap
+	static void encode(MemorySegment data, long offset, long count, HuffmanTable table, BitWriter writer)
+			throws IOException {
+		long[] codes = table.codes();
+		int[] lengths = table.lengths();
+		long end = offset + count;
+		long i = offset;
+
+		for (; i + 3 <= end; i += 3) {
+			int s0 = data.get(ValueLayout.JAVA_BYTE, i) & 0xFF;
+			int s1 = data.get(ValueLayout.JAVA_BYTE, i + 1) & 0xFF;
+			int s2 = data.get(ValueLayout.JAVA_BYTE, i + 2) & 0xFF;
+			int l1 = lengths[s1];
+			int l2 = lengths[s2];
+			if (lengths[s0] == 0 || l1 == 0 || l2 == 0) {
+				throw missingSymbol(lengths[s0] == 0 ? s0 : l1 == 0 ? s1 : s2);
+			}
+			long code = (((codes[s0] << l1) | codes[s1]) << l2) | codes[s2];
+			writer.writeBits(code, lengths[s0] + l1 + l2);
+		}
+		for (; i < end; i++) {
+			int symbol = data.get(ValueLayout.JAVA_BYTE, i) & 0xFF;
+			if (lengths[symbol] == 0) {
+				throw missingSymbol(symbol);
+			}
+			writer.writeBits(codes[symbol], lengths[symbol]);
+		}
+	}
+
+	private static IllegalArgumentException missingSymbol(int symbol) {
+		return new IllegalArgumentException("Byte '" + symbol + "' is missing in the Huffman tree.");
+	}
+
+	// Streams get the frames through a channel adapter, which copies them in small pieces
+	public long compressFile(String inputFilePath, OutputStream outputStream) throws IOException {
+		long size = compressFile(inputFilePath, Channels.newChannel(outputStream));
+		outputStream.flush();
+		return size;
+	}
+
+	/**
+	 * The compressFile method writes a complete .huff file in block mode. The
+	 * input is cut into blocks of blockSize bytes, and every block is encoded on
+	 * its own by one of parallelism worker threads, each using its own
+	 * BitWriter. When the table is shared, the whole file is
+	 * counted first and one code table is written in the header; otherwise each
+	 * task counts its own block and stores its own code lengths in the block.
+	 * With a dictionary there is no counting pass at all: its table is used for
+	 * every block and the header only names the dictionary.
+	 *
+	 * The blocks go through a BlockPipeline: a reader thread reads them from a
+	 * FileChannel into buffers from a BufferPool, the workers encode them and
+	 * give the buffers back, and the calling thread writes the finished blocks
+	 * in order as soon as they are ready, so disk reads, encoding and writes all
+	 * happen at the same time. Every block is encoded straight into a pooled
+	 * direct ByteBuffer holding its whole frame, which is handed to the output
+	 * channel as it is, so the compressed bytes are never copied on the heap.
+	 * Only a few blocks per worker are allowed to be in flight at once, so
+	 * memory stays bounded while all cores are kept busy.
+	 * After the last block a BlockIndex is appended that records where every
+	 * block starts and how big it is, together with the CRC32C of the whole
+	 * file. That is folded together in file order from the CRC32C every block
+	 * already has in its frame, with Checksums.combine as the blocks are
+	 * written, so the data is never read a second time for it. The channel is
+	 * not closed, and the total size of the .huff file is returned.
+	 *
+	 * Off the heap, the input file is mapped once as a MemorySegment in a shared
+	 * Arena and every block is a slice of it, encoded where it lies, so the
+	 * block buffers are never allocated and the mapping is released as soon as
+	 * the last block is done. The one exception is the checksum: CRC32C does
+	 * not accept buffers of a shared Arena, so each block passes through a
+	 * small scratch array for it, Checksums.SCRATCH_SIZE bytes at a time, which
+	 * stays in the L1 cache and is never as large as a block. The disk is then
+	 * read through page faults, which show up in the checksum phase, since that
+	 * is the first to touch a block.
+	 *
+	 * Every phase is timed into a new CodecMetrics, which getMetrics returns
+	 * afterwards.
+	 **/
+	public long compressFile(String inputFilePath, WritableByteChannel channel) throws IOException {
+		long start = System.nanoTime();
+		CodecMetrics metrics = new CodecMetrics();
+		this.metrics = metrics;
+		File inputFile = new File(inputFilePath);
+		HuffmanTable table = null;
+		HuffmanHeader header;
+		if (dictionary != null) {
+			huffmanTree = null;
+			table = dictionary.getTable();
+			huffmanTable = table;
+			header = new HuffmanHeader(getFileExtension(inputFile), inputFile.length(), blockSize, dictionary);
+		} else {
+			if (sharedTable) {
+				PhaseEvent phase = metrics.begin(CodecMetrics.Phase.HISTOGRAM);
+				long[] frequencies = countFrequencies(inputFilePath, parallelism);
+				metrics.end(phase, inputFile.length());
+				phase = metrics.begin(CodecMetrics.Phase.TREE);
+				huffmanTree = buildHuffmanTree(frequencies);
+				metrics.end(phase, 0);
+				phase = metrics.begin(CodecMetrics.Phase.TABLE);
+				table = HuffmanTable.fromTree(huffmanTree, maxCodeLength);
+				metrics.end(phase, 0);
+				huffmanTable = table;
+			}
+			header = new HuffmanHeader(getFileExtension(inputFile), inputFile.length(), blockSize, table);
+		}
+
+		header.setInterleaved(interleaved);
+		header.setSeekIndex(checkpointInterval > 0);
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		header.write(new DataOutputStream(headerBytes));
+		writeFully(channel, ByteBuffer.wrap(headerBytes.toByteArray()));
+
+		BlockIndex index = new BlockIndex();
+		index.setSeekIndex(checkpointInterval > 0);
+		final HuffmanTable blockTable = table;
+		final int blockMaxLength = maxCodeLength;
+		final boolean blockInterleaved = interleaved;
+		final int blockCheckpoints = checkpointInterval;
+		final long[] written = { headerBytes.size() };
+		final long[] done = { 0 };
+		final ProgressListener listener = progressListener;
+		final long total = header.getOriginalLength();
+
+		// Read blocks are array-backed, mapped ones are slices; frames go to the channel as they are
+		int capacity = 2 * parallelism + 1;
+		BufferPool buffers = new BufferPool(capacity, blockSize, false);
+		BufferPool frames = new BufferPool(capacity, maxFrameSize(blockSize), true);
+		final int[] fileChecksum = { 0 }; // CRC32C of no data
+		try (FileChannel input = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+				Arena arena = offHeap ? Arena.ofShared() : null) {
+			MemorySegment mapped = arena == null ? null
+					: input.map(FileChannel.MapMode.READ_ONLY, 0, input.size(), arena);
+			final long[] read = { 0 };
+			BlockPipeline.run(() -> {
+				PhaseEvent phase = metrics.begin(CodecMetrics.Phase.IO_WAIT);
+				InputBlock block = mapped == null ? new InputBlock(readBlock(input, buffers.take()), null)
+						: new InputBlock(null, mapBlock(mapped, read[0]));
+				int length = block.length();
+				metrics.end(phase, length);
+				read[0] += length;
+				if (length == 0) {
+					block.release(buffers);
+					return null;
+				}
+				return block;
+			}, block -> {
+				try {
+					ByteBuffer frame = frames.take(maxFrameSize(block.length()));
+					return block.buffer != null
+							? encodeBlock(block.buffer.array(), block.length(), blockTable, blockMaxLength,
+									blockInterleaved, blockCheckpoints, metrics, frame)
+							: encodeBlock(block.slice, blockTable, blockMaxLength, blockInterleaved,
+									blockCheckpoints, metrics, frame);
+				} finally {
+					block.release(buffers);
+				}
+			}, block -> {
+				PhaseEvent phase = metrics.begin(CodecMetrics.Phase.IO_WAIT);
+				int frameSize = block.frame.remaining();
+				written[0] = writeBlock(block, channel, index, written[0]);
+				fileChecksum[0] = Checksums.combine(fileChecksum[0], block.checksum, block.originalSize);
+				frames.release(block.frame);
+				metrics.end(phase, frameSize);
+				done[0] += block.originalSize;
+				if (listener != null) {
+					listener.progress(done[0], total);
+				}
+			}, parallelism, capacity);
+		}
+		long position = written[0];
+
+		index.setChecksum(fileChecksum[0]);
+		ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+		index.write(new DataOutputStream(indexBytes), position);
+		writeFully(channel, ByteBuffer.wrap(indexBytes.toByteArray()));
+		metrics.setSizes(total, position + indexBytes.size(), System.nanoTime() - start);
+		return position + indexBytes.size();
+	}
+
+	/**
+	 * The encodeBlock method turns one block into a self-contained frame: the
+	 * original size of the block, the size of its payload, the block type, the
+	 * CRC32C of the original block, the block's own code lengths when it is
+	 * Huffman coded without a shared table, and then the payload. A frame can be
+	 * decoded and checked without looking at any other block.
+	 *
+	 * The block's histogram decides the type before anything is encoded. A
+	 * block of a single repeated byte is stored as a run whose payload is that
+	 * one byte. Otherwise the size of the Huffman coded block is worked out from
+	 * the histogram and the code lengths; with a per-block table the entropy of
+	 * the histogram is checked first, since no prefix code can beat it, so
+	 * random data never even gets a tree. A block that would not shrink is
+	 * stored raw, which bounds the output at a few bytes more than the input
+	 * and is restored with a plain copy.
+	 *
+	 * An interleaved payload cuts the block into HuffmanDecoder.STREAMS segments
+	 * of equal size (the last one may be shorter) and encodes each into its own
+	 * bitstream, padded to a whole byte. A jump table with the sizes of all
+	 * streams but the last comes first, so the decoder can find where each
+	 * stream starts without reading the others.
+	 *
+	 * With a checkpointInterval above 0, every stream notes where the code of
+	 * every checkpointInterval-th byte starts, counted from the start of the
+	 * stream, so a reader can later start decoding there. The streams are
+	 * encoded exactly as without checkpoints.
+	 *
+	 * The checksum, the histogram, the block's own table and the encoding are
+	 * each timed into metrics.
+	 **/
+	static EncodedBlock encodeBlock(byte[] data, int length, HuffmanTable sharedTable, int maxCodeLength,
+			boolean interleaved) throws IOException {
+		return encodeBlock(data, length, sharedTable, maxCodeLength, interleaved, 0, new CodecMetrics(),
+				ByteBuffer.allocate(maxFrameSize(length)));
+	}
+
+	// Encode into frame, which must be cleared and hold at least maxFrameSize(length) bytes
+	static EncodedBlock encodeBlock(byte[] data, int length, HuffmanTable sharedTable, int maxCodeLength,
+			boolean interleaved, int checkpointInterval, CodecMetrics metrics, ByteBuffer frame) throws IOException {
+		return encodeBlock(MemorySegment.ofArray(data).asSlice(0, length), data, sharedTable, maxCodeLength,
+				interleaved, checkpointInterval, metrics, frame);
+	}
 
-		try (BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(inputFilePath))) {
-			int byteRead;
-			int bitBuffer = 0;
-			int bitCount = 0;
+	// The same for a block in a segment, such as a slice of the mapped input file
+	static EncodedBlock encodeBlock(MemorySegment data, HuffmanTable sharedTable, int maxCodeLength,
+			boolean interleaved, int checkpointInterval, CodecMetrics metrics, ByteBuffer frame) throws IOException {
+		return encodeBlock(data, null, sharedTable, maxCodeLength, interleaved, checkpointInterval, metrics, frame);
+	}
+
+	// array is the block's array if it has one, whose loops the JIT compiles best when they only see arrays
+	private static EncodedBlock encodeBlock(MemorySegment data, byte[] array, HuffmanTable sharedTable,
+			int maxCodeLength, boolean interleaved, int checkpointInterval, CodecMetrics metrics, ByteBuffer frame)
+			throws IOException {
+		int length = (int) data.byteSize();
+		PhaseEvent phase = metrics.begin(CodecMetrics.Phase.CHECKSUM);
+		int checksum = array != null ? Checksums.crc32c(array, 0, length) : Checksums.crc32c(data);
+		metrics.end(phase, length);
+		phase = metrics.begin(CodecMetrics.Phase.HISTOGRAM);
+		int[] counts = array != null ? FrequencyCounter.count(array, 0, length) : FrequencyCounter.count(data);
+		metrics.end(phase, length);
+		if (counts[data.get(ValueLayout.JAVA_BYTE, 0) & 0xFF] == length) {
+			return frame(frame, length, HuffmanHeader.BLOCK_RUN, checksum, data, 1);
+		}
+		int overhead = interleaved ? 4 * (HuffmanDecoder.STREAMS - 1) + HuffmanDecoder.STREAMS : 1;
+		if (sharedTable == null && (entropyBits(counts, length) + 7) / 8 + overhead >= length) {
+			return frame(frame, length, HuffmanHeader.BLOCK_RAW, checksum, data, length);
+		}
+
+		HuffmanTable table = sharedTable;
+		byte[] lengths = new byte[0];
+		if (table == null) {
+			phase = metrics.begin(CodecMetrics.Phase.TABLE);
+			table = HuffmanTable.fromFrequencies(counts, maxCodeLength);
+			lengths = HuffmanHeader.packLengths(table);
+			metrics.end(phase, 0);
+		}
+		long bits = 0;
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			bits += (long) counts[symbol] * table.getLength(symbol);
+		}
+		if (lengths.length + (bits + 7) / 8 + overhead >= length) {
+			return frame(frame, length, HuffmanHeader.BLOCK_RAW, checksum, data, length);
+		}
 
-			while ((byteRead = inputStream.read()) != -1) {
-				String code = findHuffmanCode(huffmanTree, (char) byteRead, new StringBuilder());
-				if (code == null) {
-					throw new IllegalArgumentException("Byte '" + byteRead + "' is missing in the Huffman tree.");
+		phase = metrics.begin(CodecMetrics.Phase.ENCODE);
+		int start = frame.position();
+		frame.putInt(length).putInt(0).put((byte) HuffmanHeader.BLOCK_HUFFMAN).putInt(checksum).put(lengths);
+		int payloadStart = frame.position();
+		Checkpoints checkpoints = checkpointInterval > 0 ? new Checkpoints(length, checkpointInterval) : null;
+		if (interleaved) {
+			int jumpTable = payloadStart;
+			frame.position(jumpTable + 4 * (HuffmanDecoder.STREAMS - 1));
+			int segment = HuffmanDecoder.segmentSize(length);
+			for (int stream = 0; stream < HuffmanDecoder.STREAMS; stream++) {
+				int segmentStart = Math.min(length, stream * segment);
+				long streamStart = 8L * (frame.position() - start);
+				BitWriter writer = new BitWriter(frame);
+				encodeStream(data, array, segmentStart, Math.min(length, segmentStart + segment) - segmentStart,
+						table, writer, streamStart, checkpoints);
+				writer.flush();
+				if (stream < HuffmanDecoder.STREAMS - 1) {
+					frame.putInt(jumpTable + 4 * stream, (int) writer.getBytesWritten());
 				}
+			}
+		} else {
+			BitWriter writer = new BitWriter(frame);
+			encodeStream(data, array, 0, length, table, writer, 8L * (payloadStart - start), checkpoints);
+			writer.flush();
+		}
+		frame.putInt(start + 4, frame.position() - payloadStart);
+		metrics.end(phase, length);
+		metrics.addCodedBlock(counts, length, bits);
+		return new EncodedBlock(length, checksum, frame.flip(), checkpoints);
+	}
+
+	// Encode one stream, noting its start bit, counted from the frame, every checkpoints.interval bytes
+	private static void encodeStream(MemorySegment data, byte[] array, int offset, int count, HuffmanTable table,
+			BitWriter writer, long streamStart, Checkpoints checkpoints) throws IOException {
+		if (checkpoints == null) {
+			encode(data, array, offset, count, table, writer);
+			return;
+		}
+		for (int done = 0; done < count; done += checkpoints.interval) {
+			checkpoints.add(offset + done, streamStart + writer.getBitsWritten());
+			encode(data, array, offset + done, Math.min(checkpoints.interval, count - done), table, writer);
+		}
+	}
+
+	// Original size, payload size, block type, checksum and the payload of a raw or run block
+	private static EncodedBlock frame(ByteBuffer frame, int length, int type, int checksum, MemorySegment payload,
+			int payloadSize) {
+		frame.putInt(length).putInt(payloadSize).put((byte) type).putInt(checksum);
+		// The segment of a buffer starts at its position
+		MemorySegment.copy(payload, 0, MemorySegment.ofBuffer(frame), 0, payloadSize);
+		frame.position(frame.position() + payloadSize);
+		return new EncodedBlock(length, checksum, frame.flip(), null);
+	}
+
+	private static void encode(MemorySegment data, byte[] array, int offset, int count, HuffmanTable table,
+			BitWriter writer) throws IOException {
+		if (array != null) {
+			encode(array, offset, count, table, writer);
+		} else {
+			encode(data, offset, count, table, writer);
+		}
+	}
+
+	/**
+	 * The maxFrameSize method tells how big the frame of a block of length
+	 * bytes can get: the fixed fields, the largest set of packed code lengths,
+	 * a jump table, the block itself when it is stored raw, and 8 bytes for the
+	 * BitWriter's word stores past the last byte. A Huffman coded payload is
+	 * always smaller than the block, since blocks that would not shrink are
+	 * stored raw instead.
+	 **/
+	static int maxFrameSize(int length) {
+		return (int) Math.min(Integer.MAX_VALUE,
+				(long) length + 13 + 2 + HuffmanTable.SYMBOLS / 2 + 4 * (HuffmanDecoder.STREAMS - 1) + 8);
+	}
+
+	// Shannon entropy of the histogram in bits, a lower bound for any prefix code
+	static double entropyBits(int[] counts, int length) {
+		double bits = 0;
+		for (int count : counts) {
+			if (count > 0) {
+				bits += count * Math.log((double) length / count);
+			}
+		}
+		return bits / Math.log(2);
+	}
+
+	// Fill block from the channel and flip it; an empty block means the input is used up
+	private ByteBuffer readBlock(FileChannel input, ByteBuffer block) throws IOException {
+		block.limit(blockSize);
+		while (block.hasRemaining()) {
+			if (input.read(block) < 0) {
+				break;
+			}
+		}
+		return block.flip();
+	}
 
-				for (char bit : code.toCharArray()) {
-					bitBuffer = (bitBuffer << 1) | (bit - '0');
-					bitCount++;
+	// The slice of the mapped input holding the block that starts at position, empty at the end
+	private MemorySegment mapBlock(MemorySegment input, long position) {
+		return input.asSlice(position, Math.min(blockSize, input.byteSize() - position));
+	}
 
-					if (bitCount == 8) {
-						byteArrayOutputStream.write(bitBuffer);
-						bitBuffer = 0;
-						bitCount = 0;
-					}
+	private static long writeBlock(EncodedBlock block, WritableByteChannel channel, BlockIndex index, long position)
+			throws IOException {
+		int frameSize = block.frame.remaining();
+		writeFully(channel, block.frame);
+		Checkpoints checkpoints = block.checkpoints;
+		for (int i = 0; checkpoints != null && i < checkpoints.count; i++) {
+			index.addCheckpoint(index.getOriginalLength() + checkpoints.offsets[i], 8 * position + checkpoints.bits[i]);
+		}
+		index.add(position, block.originalSize, frameSize);
+		return position + frameSize;
+	}
+
+	static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	static <T> T await(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a block.");
+		} catch (ExecutionException e) {
+			// ForkJoinPool wraps a task's IOException in a RuntimeException, and again when rethrowing it
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
 				}
 			}
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
 
-			if (bitCount > 0) {
-				bitBuffer <<= (8 - bitCount);
-				byteArrayOutputStream.write(bitBuffer);
+	/**
+	 * The shutdownAndWait method stops pool and waits until every task in it
+	 * has finished, for callers that are about to close an Arena or a mapping
+	 * the tasks use. It keeps waiting even if the calling thread is
+	 * interrupted, as when a job is cancelled, since a task that is still
+	 * running would otherwise touch memory that is no longer mapped. The
+	 * interrupt is remembered and set again once the pool has terminated.
+	 **/
+	static void shutdownAndWait(ExecutorService pool) {
+		pool.shutdownNow();
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (pool.awaitTermination(1, TimeUnit.MINUTES)) {
+					break;
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
 			}
 		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
 
-		return byteArrayOutputStream.toByteArray();
+	static String getFileExtension(File file) {
+		String fileName = file.getName();
+		int lastIndex = fileName.lastIndexOf(".");
+		return lastIndex == -1 ? "" : fileName.substring(lastIndex + 1);
 	}
 
-	private String findHuffmanCode(BinaryTree tree, char target, StringBuilder path) {
-		if (tree == null)
-			return null;
+	static class EncodedBlock {
+		final int originalSize;
+		// CRC32C of the original block, as stored in the frame
+		final int checksum;
+		// From position to limit
+		final ByteBuffer frame;
+		// Null for a block without checkpoints
+		final Checkpoints checkpoints;
+
+		EncodedBlock(int originalSize, int checksum, ByteBuffer frame, Checkpoints checkpoints) {
+			this.originalSize = originalSize;
+			this.checksum = checksum;
+			this.frame = frame;
+			this.checkpoints = checkpoints;
+		}
+	}
+
+	// Offsets into a block and the frame bits where the codes of the bytes there start, in the order found
+	static class Checkpoints {
+		final int interval;
+		final int[] offsets;
+		final long[] bits;
+		int count;
 
-		if (tree.ch == target)
-			return path.toString();
+		Checkpoints(int length, int interval) {
+			this.interval = interval;
+			// Every stream starts with a checkpoint of its own
+			int capacity = length / interval + HuffmanDecoder.STREAMS + 1;
+			this.offsets = new int[capacity];
+			this.bits = new long[capacity];
+		}
 
-		path.append('0');
-		String leftPath = findHuffmanCode(tree.left, target, path);
-		if (leftPath != null)
-			return leftPath;
-		path.deleteCharAt(path.length() - 1);
+		void add(int offset, long bit) {
+			offsets[count] = offset;
+			bits[count] = bit;
+			count++;
+		}
+	}
 
-		path.append('1');
-		String rightPath = findHuffmanCode(tree.right, target, path);
-		if (rightPath != null)
-			return rightPath;
-		path.deleteCharAt(path.length() - 1);
+	// A block read into a pooled heap buffer, or a slice of the mapped input file
+	private static class InputBlock {
+		final ByteBuffer buffer;
+		final MemorySegment slice;
 
-		return null;
+		InputBlock(ByteBuffer buffer, MemorySegment slice) {
+			this.buffer = buffer;
+			this.slice = slice;
+		}
+
+		int length() {
+			return buffer != null ? buffer.limit() : (int) slice.byteSize();
+		}
+
+		void release(BufferPool buffers) {
+			if (buffer != null) {
+				buffers.release(buffer);
+			}
+		}
 	}
 
 	public String displayHuffmanTree() {
@@ -1,54 +1,465 @@
 package application;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class FileDecompressor {
+	private static final int BUFFER_SIZE = 64 * 1024;
 
 	/**
 	 * The decompress method takes a compressed file and a special set of rules
 	 * (Huffman tree). It follows these rules to decode the compressed file and save
 	 * the original file.
-	 * 
-	 * First, it converts the compressed file into a long string of 0s and 1s. Then,
-	 * it starts at the beginning of this string and follows the rules in the
-	 * Huffman tree.
-	 * 
-	 * Each 0 or 1 tells the method to go left or right in the tree. When it reaches
-	 * the end of a branch (a leaf), it finds a letter and writes it to the new
-	 * file. Then, it starts again from the beginning of the string and the tree.
-	 * 
-	 * 
-	 * This process continues until the entire string of 0 s and 1s is used, and the
+	 *
+	 * First, it turns the Huffman tree into a decoder with a lookup table, so it
+	 * can recognise a whole code from the next few bits at once instead of
+	 * walking the tree one bit at a time. Then it reads the compressed bytes
+	 * directly, without turning them into a string of 0s and 1s.
+	 *
+	 * The decoded bytes are collected in a fixed-size buffer that is written to
+	 * the new file whenever it is full, so the memory used does not grow with the
+	 * size of the file.
+	 *
+	 * This process continues until all the compressed bits are used, and the
 	 * original file is fully restored.
 	 **/
 
 	public static void decompress(byte[] compressedData, BinaryTree huffmanTree, String outputFile) throws IOException {
+		HuffmanDecoder decoder = new HuffmanDecoder(HuffmanTable.fromTree(huffmanTree));
+		BitReader reader = new BitReader(compressedData, 0, compressedData.length);
+
 		try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-			StringBuilder binaryString = new StringBuilder();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int count;
 
-			// Convert the byte array into a binary string
-			for (byte b : compressedData) {
-				String binary = String.format("%8s", Integer.toBinaryString(b & 0xFF)).replace(' ', '0');
-				binaryString.append(binary);
+			while ((count = decoder.decode(reader, buffer, 0, buffer.length)) > 0) {
+				fos.write(buffer, 0, count);
 			}
+		}
+	}
 
-			BinaryTree current = huffmanTree;
+	public static long decompress(ReadableByteChannel channel, HuffmanTable table, long originalLength,
+			WritableByteChannel outputChannel) throws IOException {
+		return decompress(Channels.newInputStream(channel), table, originalLength,
+				Channels.newOutputStream(outputChannel));
+	}
 
-			// Decompress the binary string using the Huffman tree
-			for (int i = 0; i < binaryString.length(); i++) {
-				if (binaryString.charAt(i) == '0') {
-					current = current.left;
-				} else {
-					current = current.right;
-				}
+	/**
+	 * The streaming decompress method reads the compressed bits from an input
+	 * stream and writes the decoded bytes to an output stream, both through
+	 * fixed-size buffers, so a file of any size is restored with the same small
+	 * amount of memory. Because it is told the exact length of the original
+	 * data, it stops as soon as that many bytes have been decoded and never
+	 * turns the zero bits that pad the last byte into extra symbols. If the
+	 * compressed data ends before the original length is reached, an
+	 * EOFException is thrown. The output stream is flushed but not closed.
+	 **/
+	public static long decompress(InputStream inputStream, HuffmanTable table, long originalLength,
+			OutputStream outputStream) throws IOException {
+		HuffmanDecoder decoder = new HuffmanDecoder(table);
+		BitReader reader = new BitReader(inputStream);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long remaining = originalLength;
+
+		while (remaining > 0) {
+			int count = decoder.decode(reader, buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (count == 0) {
+				throw new EOFException("Compressed data ended after " + (originalLength - remaining) + " of "
+						+ originalLength + " bytes.");
+			}
+			outputStream.write(buffer, 0, count);
+			remaining -= count;
+		}
+		outputStream.flush();
+
+		return originalLength;
+	}
+
+	/**
+	 * The decompressBlocks method restores a .huff file written in block mode.
+	 * The header has already been read by the caller, so the input is positioned
+	 * at the first block. Each block frame tells how many original bytes it holds
+	 * and how long its payload is, so the block index at the end of the file is
+	 * not needed for reading the blocks in order.
+	 *
+	 * The frames go through a BlockPipeline: a reader thread reads one frame
+	 * after another into pooled payload buffers, parallelism workers decode them
+	 * into pooled block buffers and check each against the block's CRC32C, and
+	 * the calling thread writes the restored blocks in order. Reading, decoding
+	 * and writing overlap, and only a few blocks per worker are held in memory.
+	 **/
+	public static long decompressBlocks(InputStream inputStream, HuffmanHeader header, OutputStream outputStream)
+			throws IOException {
+		return decompressBlocks(inputStream, header, outputStream, Runtime.getRuntime().availableProcessors());
+	}
+
+	public static long decompressBlocks(InputStream inputStream, HuffmanHeader header, OutputStream outputStream,
+			int parallelism) throws IOException {
+		HuffmanDecoder sharedDecoder = header.isSharedTable() ? new HuffmanDecoder(header.getTable()) : null;
+		int blockSize = (int) Math.max(1, Math.min(header.getBlockSize(), header.getOriginalLength()));
+		int capacity = 2 * parallelism + 1;
+		BufferPool payloads = new BufferPool(capacity, blockSize, false);
+		BufferPool blocks = new BufferPool(capacity, blockSize, false);
+
+		BlockPipeline.run(new FrameReader(new DataInputStream(inputStream), header, blockSize, payloads), frame -> {
+			ByteBuffer block = blocks.take();
+			try {
+				HuffmanDecoder decoder = frame.table != null ? new HuffmanDecoder(frame.table) : sharedDecoder;
+				restoreBlock(frame.type, decoder, frame.payload.array(), 0, frame.payloadSize, block.array(),
+						frame.originalSize, header.isInterleaved());
+				checkBlock(frame.checksum, block.array(), 0, frame.originalSize, frame.block);
+			} catch (IOException | RuntimeException e) {
+				blocks.release(block);
+				throw e;
+			} finally {
+				payloads.release(frame.payload);
+			}
+			return block.limit(frame.originalSize);
+		}, block -> {
+			outputStream.write(block.array(), 0, block.limit());
+			blocks.release(block);
+		}, parallelism, capacity);
+		outputStream.flush();
+
+		return header.getOriginalLength();
+	}
+
+	// Compare a restored block with the CRC32C from its frame and return it
+	private static int checkBlock(int expected, byte[] data, int offset, int length, int block) throws IOException {
+		int actual = Checksums.crc32c(data, offset, length);
+		if (actual != expected) {
+			throw new IOException("Checksum mismatch in block " + block + ": the file is corrupt.");
+		}
+		return actual;
+	}
+
+	/**
+	 * The restoreBlock method turns the payload of one block back into its
+	 * originalSize bytes according to the block type: a raw block is copied, a
+	 * run is filled with its single byte, and a Huffman block is decoded with
+	 * the given decoder. A payload whose size does not fit its type is corrupt.
+	 **/
+	static void restoreBlock(int type, HuffmanDecoder decoder, byte[] payload, int payloadOffset, int payloadSize,
+			byte[] output, int originalSize, boolean interleaved) throws IOException {
+		switch (type) {
+		case HuffmanHeader.BLOCK_RAW -> {
+			if (payloadSize != originalSize) {
+				throw new IOException("Corrupt raw block: " + payloadSize + " of " + originalSize + " bytes.");
+			}
+			System.arraycopy(payload, payloadOffset, output, 0, originalSize);
+		}
+		case HuffmanHeader.BLOCK_RUN -> {
+			if (payloadSize != 1) {
+				throw new IOException("Corrupt run block: " + payloadSize + " bytes.");
+			}
+			Arrays.fill(output, 0, originalSize, payload[payloadOffset]);
+		}
+		case HuffmanHeader.BLOCK_HUFFMAN ->
+			decodeBlock(decoder, payload, payloadOffset, payloadSize, output, originalSize, interleaved);
+		default -> throw new IOException("Corrupt block: unknown type " + type + ".");
+		}
+	}
+
+	// Decode exactly originalSize bytes of one block into output
+	static void decodeBlock(HuffmanDecoder decoder, byte[] payload, int payloadOffset, int payloadSize,
+			byte[] output, int originalSize, boolean interleaved) throws IOException {
+		if (interleaved) {
+			decodeInterleavedBlock(decoder, payload, payloadOffset, payloadSize, output, originalSize);
+			return;
+		}
+		BitReader reader = new BitReader(payload, payloadOffset, payloadSize);
+		int decoded = decoder.decode(reader, output, 0, originalSize);
+		if (decoded != originalSize) {
+			throw new EOFException("Block ended after " + decoded + " of " + originalSize + " bytes.");
+		}
+	}
+
+	// Read the jump table and decode the four streams side by side
+	private static void decodeInterleavedBlock(HuffmanDecoder decoder, byte[] payload, int payloadOffset,
+			int payloadSize, byte[] output, int originalSize) throws IOException {
+		int jumpTableSize = 4 * (HuffmanDecoder.STREAMS - 1);
+		if (payloadSize < jumpTableSize) {
+			throw new IOException("Corrupt block: no jump table.");
+		}
+		ByteBuffer jumpTable = ByteBuffer.wrap(payload, payloadOffset, jumpTableSize);
+		int[] sizes = new int[HuffmanDecoder.STREAMS];
+		int remaining = payloadSize - jumpTableSize;
+		for (int stream = 0; stream < HuffmanDecoder.STREAMS; stream++) {
+			sizes[stream] = stream < HuffmanDecoder.STREAMS - 1 ? jumpTable.getInt() : remaining;
+			if (sizes[stream] < 0 || sizes[stream] > remaining) {
+				throw new IOException("Corrupt block: stream " + stream + " has " + sizes[stream] + " bytes.");
+			}
+			remaining -= sizes[stream];
+		}
+		decoder.decodeInterleaved(payload, payloadOffset + jumpTableSize, sizes, output, 0, originalSize);
+	}
+
+	public static HuffmanHeader decompressFile(String inputFilePath, String outputFilePath) throws IOException {
+		return decompressFile(inputFilePath, outputFilePath, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * The decompressFile method restores a block-mode .huff file using several
+	 * threads. It reads the header and the block index at the end of the file,
+	 * and from the original sizes in the index works out where every block
+	 * belongs in the output file. Each block is then decoded by its own task on
+	 * a ForkJoinPool with the given parallelism: the task reads its frame with a
+	 * positional read, decodes it and copies the result straight to its place in
+	 * the output, which is memory-mapped through a MappedOutput since its size is
+	 * known. Blocks can therefore finish in any order, and only the blocks
+	 * currently being decoded are in memory, in frame and block buffers that
+	 * every worker reuses from a BufferPool.
+	 *
+	 * Every block is checked against the CRC32C in its frame. The block checksums
+	 * are then folded together in file order with Checksums.combine and compared
+	 * with the checksum of the whole file in the block index, which also catches
+	 * blocks that were dropped, swapped or duplicated in an intact form.
+	 **/
+	public static HuffmanHeader decompressFile(String inputFilePath, String outputFilePath, int parallelism)
+			throws IOException {
+		return decompressFile(inputFilePath, outputFilePath, parallelism, null);
+	}
+
+	// The dictionary is only needed for files that were compressed with one
+	public static HuffmanHeader decompressFile(String inputFilePath, String outputFilePath, int parallelism,
+			HuffmanDictionary dictionary) throws IOException {
+		return decompressFile(inputFilePath, outputFilePath, parallelism, dictionary, null);
+	}
+
+	// The listener, if any, is told about every block in file order
+	public static HuffmanHeader decompressFile(String inputFilePath, String outputFilePath, int parallelism,
+			HuffmanDictionary dictionary, ProgressListener listener) throws IOException {
+		return decompressFile(inputFilePath, outputFilePath, parallelism, dictionary, listener, new CodecMetrics());
+	}
+
+	// Every phase of every block is timed into metrics
+	public static HuffmanHeader decompressFile(String inputFilePath, String outputFilePath, int parallelism,
+			HuffmanDictionary dictionary, ProgressListener listener, CodecMetrics metrics) throws IOException {
+		try (FileChannel input = FileChannel.open(Path.of(inputFilePath), StandardOpenOption.READ);
+				FileChannel output = FileChannel.open(Path.of(outputFilePath), StandardOpenOption.CREATE,
+						StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			return restoreFile(input, output, parallelism, dictionary, listener, metrics);
+		}
+	}
+
+	/**
+	 * The verifyFile method decodes every block of a .huff file exactly like
+	 * decompressFile and checks all checksums, but throws the decoded data away
+	 * instead of writing it. It returns the header if the file is intact and
+	 * throws an IOException naming the problem otherwise.
+	 **/
+	public static HuffmanHeader verifyFile(String inputFilePath, int parallelism, HuffmanDictionary dictionary)
+			throws IOException {
+		return verifyFile(inputFilePath, parallelism, dictionary, new CodecMetrics());
+	}
 
-				// When a leaf node is reached, write the decoded character
-				if (current.left == null && current.right == null) {
-					fos.write(current.ch);
-					current = huffmanTree; // Reset to root of Huffman tree
+	public static HuffmanHeader verifyFile(String inputFilePath, int parallelism, HuffmanDictionary dictionary,
+			CodecMetrics metrics) throws IOException {
+		try (FileChannel input = FileChannel.open(Path.of(inputFilePath), StandardOpenOption.READ)) {
+			return restoreFile(input, null, parallelism, dictionary, null, metrics);
+		}
+	}
+
+	// Decode all blocks in parallel into output, or only check them if output is null
+	private static HuffmanHeader restoreFile(FileChannel input, FileChannel output, int parallelism,
+			HuffmanDictionary dictionary, ProgressListener listener, CodecMetrics metrics) throws IOException {
+		long start = System.nanoTime();
+		HuffmanHeader header = HuffmanHeader.read(new DataInputStream(
+				new BufferedInputStream(Channels.newInputStream(input.position(0)))), dictionary);
+		BlockIndex index = BlockIndex.read(input, header.getBlockSize());
+		HuffmanDecoder sharedDecoder = header.isSharedTable() ? new HuffmanDecoder(header.getTable()) : null;
+
+		long totalSize = 0;
+		for (int block = 0; block < index.getBlockCount(); block++) {
+			totalSize += index.getOriginalSize(block);
+		}
+		if (totalSize != header.getOriginalLength()) {
+			throw new IOException("Corrupt block index: blocks hold " + totalSize + " of "
+					+ header.getOriginalLength() + " bytes.");
+		}
+
+		// One frame and one block buffer per worker, reused for all blocks
+		int blockSize = (int) Math.max(1, Math.min(header.getBlockSize(), totalSize));
+		BufferPool frames = new BufferPool(parallelism, FileCompressor.maxFrameSize(blockSize), false);
+		BufferPool blocks = new BufferPool(parallelism, blockSize, false);
+		MappedOutput mapped = output == null ? null : new MappedOutput(output, totalSize);
+
+		List<Future<Integer>> tasks = new ArrayList<>();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			long outputPosition = 0;
+			for (int block = 0; block < index.getBlockCount(); block++) {
+				final int current = block;
+				final long position = outputPosition;
+				tasks.add(pool.submit(() -> decompressBlock(input, index, current, header, sharedDecoder, mapped,
+						position, metrics, frames, blocks)));
+				outputPosition += index.getOriginalSize(block);
+			}
+
+			int fileChecksum = 0; // CRC32C of no data
+			long done = 0;
+			for (int block = 0; block < tasks.size(); block++) {
+				int blockChecksum = FileCompressor.await(tasks.get(block));
+				fileChecksum = Checksums.combine(fileChecksum, blockChecksum, index.getOriginalSize(block));
+				done += index.getOriginalSize(block);
+				if (listener != null) {
+					listener.progress(done, totalSize);
 				}
 			}
+			if (fileChecksum != index.getChecksum()) {
+				throw new IOException("Checksum mismatch for the whole file: the file is corrupt.");
+			}
+		} finally {
+			// The tasks of a failed or cancelled file may still be writing until they notice
+			FileCompressor.shutdownAndWait(pool);
+			if (mapped != null) {
+				mapped.close();
+			}
 		}
+		metrics.setSizes(totalSize, input.size(), System.nanoTime() - start);
+		return header;
 	}
 
+	// Restore one block, check it and write it to its place in output unless output is null
+	private static int decompressBlock(FileChannel input, BlockIndex index, int block, HuffmanHeader header,
+			HuffmanDecoder sharedDecoder, MappedOutput output, long outputPosition, CodecMetrics metrics,
+			BufferPool frames, BufferPool blocks) throws IOException {
+		int frameSize = index.getCompressedSize(block);
+		ByteBuffer frameBuffer = frames.take(frameSize);
+		ByteBuffer blockBuffer = null;
+		try {
+			PhaseEvent phase = metrics.begin(CodecMetrics.Phase.IO_WAIT);
+			byte[] frame = BlockIndex.readFully(input, index.getOffset(block), frameBuffer.limit(frameSize)).array();
+			metrics.end(phase, frameSize);
+			DataInputStream dis = new DataInputStream(new ByteArrayInputStream(frame, 0, frameSize));
+			int originalSize = dis.readInt();
+			int payloadSize = dis.readInt();
+			if (originalSize != index.getOriginalSize(block) || originalSize > header.getBlockSize()
+					|| payloadSize < 0) {
+				throw new IOException("Corrupt block " + block + ".");
+			}
+			int type = dis.readUnsignedByte();
+			int expected = dis.readInt();
+			HuffmanDecoder decoder = sharedDecoder;
+			if (type == HuffmanHeader.BLOCK_HUFFMAN && sharedDecoder == null) {
+				phase = metrics.begin(CodecMetrics.Phase.TABLE);
+				decoder = new HuffmanDecoder(HuffmanHeader.readLengths(dis));
+				metrics.end(phase, 0);
+			}
+			int payloadOffset = frameSize - dis.available();
+			if (payloadOffset + payloadSize > frameSize) {
+				throw new IOException("Corrupt block " + block + ".");
+			}
+
+			byte[] data;
+			int offset;
+			if (type == HuffmanHeader.BLOCK_RAW && payloadSize == originalSize) {
+				// Checked and written straight from the frame without a copy
+				data = frame;
+				offset = payloadOffset;
+			} else {
+				phase = metrics.begin(CodecMetrics.Phase.DECODE);
+				blockBuffer = blocks.take(originalSize);
+				data = blockBuffer.array();
+				offset = 0;
+				restoreBlock(type, decoder, frame, payloadOffset, payloadSize, data, originalSize,
+						header.isInterleaved());
+				metrics.end(phase, originalSize);
+			}
+			phase = metrics.begin(CodecMetrics.Phase.CHECKSUM);
+			int checksum = checkBlock(expected, data, offset, originalSize, block);
+			metrics.end(phase, originalSize);
+			if (output != null) {
+				phase = metrics.begin(CodecMetrics.Phase.IO_WAIT);
+				output.write(outputPosition, data, offset, originalSize);
+				metrics.end(phase, originalSize);
+			}
+			return checksum;
+		} finally {
+			frames.release(frameBuffer);
+			if (blockBuffer != null) {
+				blocks.release(blockBuffer);
+			}
+		}
+	}
+
+	// One block frame as read from the input, with its payload in a pooled buffer
+	private static class Frame {
+		final int block;
+		final int type;
+		final int originalSize;
+		final int payloadSize;
+		final int checksum;
+		final HuffmanTable table;
+		final ByteBuffer payload;
+
+		Frame(int block, int type, int originalSize, int payloadSize, int checksum, HuffmanTable table,
+				ByteBuffer payload) {
+			this.block = block;
+			this.type = type;
+			this.originalSize = originalSize;
+			this.payloadSize = payloadSize;
+			this.checksum = checksum;
+			this.table = table;
+			this.payload = payload;
+		}
+	}
+
+	// Reads frame after frame until the blocks add up to the original length
+	private static class FrameReader implements BlockPipeline.Reader<Frame> {
+		private final DataInputStream dis;
+		private final HuffmanHeader header;
+		private final int blockSize;
+		private final BufferPool payloads;
+		private long remaining;
+		private int block;
+
+		FrameReader(DataInputStream dis, HuffmanHeader header, int blockSize, BufferPool payloads) {
+			this.dis = dis;
+			this.header = header;
+			this.blockSize = blockSize;
+			this.payloads = payloads;
+			this.remaining = header.getOriginalLength();
+		}
+
+		@Override
+		public Frame read() throws IOException {
+			if (remaining == 0) {
+				return null;
+			}
+			int originalSize = dis.readInt();
+			int payloadSize = dis.readInt();
+			// No valid payload is longer than its block, which would have been stored raw instead
+			if (originalSize <= 0 || originalSize > blockSize || originalSize > remaining || payloadSize < 0
+					|| payloadSize > originalSize) {
+				throw new IOException("Corrupt block: " + originalSize + " bytes in " + payloadSize + ".");
+			}
+			int type = dis.readUnsignedByte();
+			int checksum = dis.readInt();
+			HuffmanTable table = type == HuffmanHeader.BLOCK_HUFFMAN && !header.isSharedTable()
+					? HuffmanHeader.readLengths(dis)
+					: null;
+
+			ByteBuffer payload = payloads.take(payloadSize);
+			try {
+				dis.readFully(payload.array(), 0, payloadSize);
+			} catch (IOException e) {
+				payloads.release(payload);
+				throw e;
+			}
+			remaining -= originalSize;
+			return new Frame(block++, type, originalSize, payloadSize, checksum, table, payload);
+		}
+	}
 }
@@ -0,0 +1,149 @@
+package application;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class FrequencyCounter {
+
+	static final int SLICE_SIZE = 32 * 1024 * 1024;
+	private static final int LANES = 4;
+	private static final ValueLayout.OfLong WORD = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+	public static long[] count(Path file) throws IOException {
+		return count(file, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * The count method builds an exact histogram of the 256 byte values in a
+	 * file. The file is cut into slices of SLICE_SIZE bytes and each slice is
+	 * counted by its own task on a ForkJoinPool with the given parallelism. The
+	 * whole file is mapped once as a MemorySegment instead of being copied
+	 * through a stream, every task reads its slice of that segment, and the
+	 * per-slice histograms are added together at the end, so the threads never
+	 * write to shared counters. The mapping belongs to a shared Arena and is
+	 * released as soon as the counting is done, so even huge files leave
+	 * nothing on the heap and nothing mapped behind.
+	 **/
+	public static long[] count(Path file, int parallelism) throws IOException {
+		long[] frequencies = new long[HuffmanTable.SYMBOLS];
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ); Arena arena = Arena.ofShared()) {
+			long size = channel.size();
+			if (size == 0) {
+				return frequencies;
+			}
+
+			MemorySegment data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena);
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				List<Future<long[]>> slices = new ArrayList<>();
+				for (long position = 0; position < size; position += SLICE_SIZE) {
+					MemorySegment slice = data.asSlice(position, Math.min(SLICE_SIZE, size - position));
+					slices.add(pool.submit(() -> countSlice(slice)));
+				}
+				for (Future<long[]> slice : slices) {
+					long[] counts = FileCompressor.await(slice);
+					for (int symbol = 0; symbol < frequencies.length; symbol++) {
+						frequencies[symbol] += counts[symbol];
+					}
+				}
+			} finally {
+				// The arena can only be closed once no task reads the segment any more
+				FileCompressor.shutdownAndWait(pool);
+			}
+		}
+		return frequencies;
+	}
+
+	// Histogram of an array that is already in memory, using the same lanes as countSlice
+	static int[] count(byte[] data, int offset, int length) {
+		int[] lanes = new int[LANES * HuffmanTable.SYMBOLS];
+		int end = offset + length;
+		int i = offset;
+
+		for (; i + 4 <= end; i += 4) {
+			lanes[data[i] & 0xFF]++;
+			lanes[256 + (data[i + 1] & 0xFF)]++;
+			lanes[512 + (data[i + 2] & 0xFF)]++;
+			lanes[768 + (data[i + 3] & 0xFF)]++;
+		}
+		for (; i < end; i++) {
+			lanes[data[i] & 0xFF]++;
+		}
+
+		int[] counts = new int[HuffmanTable.SYMBOLS];
+		for (int symbol = 0; symbol < counts.length; symbol++) {
+			for (int lane = 0; lane < LANES; lane++) {
+				counts[symbol] += lanes[lane * HuffmanTable.SYMBOLS + symbol];
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * The countSlice method reads the slice eight bytes at a time and spreads
+	 * the bytes over LANES separate sub-histograms. Runs of the same byte value
+	 * would otherwise increment the same counter over and over, and every
+	 * increment would have to wait for the previous one to be stored. With
+	 * several sub-histograms the increments are independent of each other, and
+	 * the sub-histograms are only added together once the slice is done.
+	 *
+	 * The words are read from the segment at offsets counted up from 0 to its
+	 * size, which lets the JIT compiler check the bounds once for the whole
+	 * loop rather than for every read.
+	 **/
+	static long[] countSlice(MemorySegment slice) {
+		int[] lanes = countLanes(slice);
+		long[] counts = new long[HuffmanTable.SYMBOLS];
+		for (int symbol = 0; symbol < counts.length; symbol++) {
+			for (int lane = 0; lane < LANES; lane++) {
+				counts[symbol] += lanes[lane * HuffmanTable.SYMBOLS + symbol];
+			}
+		}
+		return counts;
+	}
+
+	// Histogram of a block in a segment, on or off the heap, of at most 2^31 - 1 bytes
+	static int[] count(MemorySegment block) {
+		int[] lanes = countLanes(block);
+		int[] counts = new int[HuffmanTable.SYMBOLS];
+		for (int symbol = 0; symbol < counts.length; symbol++) {
+			for (int lane = 0; lane < LANES; lane++) {
+				counts[symbol] += lanes[lane * HuffmanTable.SYMBOLS + symbol];
+			}
+		}
+		return counts;
+	}
+
+	private static int[] countLanes(MemorySegment data) {
+		int[] lanes = new int[LANES * HuffmanTable.SYMBOLS];
+		long limit = data.byteSize();
+		long i = 0;
+
+		for (; i + 8 <= limit; i += 8) {
+			long word = data.get(WORD, i);
+			lanes[(int) word & 0xFF]++;
+			lanes[256 + ((int) (word >>> 8) & 0xFF)]++;
+			lanes[512 + ((int) (word >>> 16) & 0xFF)]++;
+			lanes[768 + ((int) (word >>> 24) & 0xFF)]++;
+			lanes[(int) (word >>> 32) & 0xFF]++;
+			lanes[256 + ((int) (word >>> 40) & 0xFF)]++;
+			lanes[512 + ((int) (word >>> 48) & 0xFF)]++;
+			lanes[768 + ((int) (word >>> 56) & 0xFF)]++;
+		}
+		for (; i < limit; i++) {
+			lanes[data.get(ValueLayout.JAVA_BYTE, i) & 0xFF]++;
+		}
+		return lanes;
+	}
+}
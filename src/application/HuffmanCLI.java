@@ -0,0 +1,284 @@
+package application;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class HuffmanCLI {
+
+	private static final int DEFAULT_IO_LIMIT = 8;
+
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length >= 3 && args[0].equals("train")) {
+			System.exit(train(args) ? 0 : 1);
+		}
+		if (args.length >= 4 && args[0].equals("read")) {
+			System.exit(read(args) ? 0 : 1);
+		}
+		if (args.length < 2 || !List.of("compress", "decompress", "verify").contains(args[0])) {
+			printUsage();
+			System.exit(2);
+		}
+
+		String operation = args[0];
+		boolean compress = operation.equals("compress");
+		int ioLimit = DEFAULT_IO_LIMIT;
+		HuffmanCodec codec = new HuffmanCodec();
+		List<Path> roots = new ArrayList<>();
+
+		try {
+			for (int i = 1; i < args.length; i++) {
+				switch (args[i]) {
+				case "-j" -> ioLimit = Integer.parseInt(args[++i]);
+				case "-p" -> codec.setParallelism(Integer.parseInt(args[++i]));
+				case "-b" -> codec.setBlockSize(Integer.parseInt(args[++i]));
+				case "-l" -> codec.setMaxCodeLength(Integer.parseInt(args[++i]));
+				case "--per-block-tables" -> codec.setSharedTable(false);
+				case "--interleaved" -> codec.setInterleaved(true);
+				case "--off-heap" -> codec.setOffHeap(true);
+				case "--seek-index" ->
+					codec.setCheckpointInterval(Math.multiplyExact(Integer.parseInt(args[++i]), 1024));
+				case "-d" -> codec.setDictionary(HuffmanDictionary.load(Path.of(args[++i])));
+				default -> roots.add(Path.of(args[i]));
+				}
+			}
+			if (ioLimit <= 0) {
+				throw new IllegalArgumentException("I/O limit must be positive: " + ioLimit);
+			}
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Error: " + e.getMessage());
+			printUsage();
+			System.exit(2);
+		}
+
+		if (roots.size() == 1 && roots.get(0).toString().equals("-")) {
+			System.exit(runStream(codec, operation) ? 0 : 1);
+		}
+
+		List<Path> files;
+		try {
+			files = collectFiles(roots, compress);
+		} catch (IOException e) {
+			System.err.println("Error while listing files: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		System.exit(run(codec, files, operation, ioLimit) ? 0 : 1);
+	}
+
+	/**
+	 * The run method handles every file on its own virtual thread, so thousands
+	 * of files can be queued without tying up platform threads. A semaphore lets
+	 * only ioLimit files be read and written at the same time, which keeps the
+	 * disks from being flooded while the block encoder inside each job still
+	 * uses several cores. When all files are done it prints how many bytes were
+	 * read and written and the overall throughput in MB/s. The verify operation
+	 * writes nothing; its output count is the number of bytes that were checked.
+	 * Files that would be written to the same output, such as foo.c and foo.h,
+	 * are reported and skipped before any job starts.
+	 **/
+	static boolean run(HuffmanCodec codec, List<Path> files, String operation, int ioLimit)
+			throws InterruptedException {
+		boolean compress = operation.equals("compress");
+		Semaphore ioPermits = new Semaphore(ioLimit);
+		AtomicLong bytesIn = new AtomicLong();
+		AtomicLong bytesOut = new AtomicLong();
+		List<Future<Boolean>> jobs = new ArrayList<>();
+		long start = System.nanoTime();
+		Set<Path> clashes = outputClashes(codec, files, operation);
+		boolean success = clashes.isEmpty();
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (Path file : files) {
+				if (clashes.contains(file)) {
+					continue;
+				}
+				jobs.add(executor.submit(() -> {
+					ioPermits.acquire();
+					try {
+						CodecResult result = switch (operation) {
+						case "compress" -> codec.compress(file);
+						case "decompress" -> codec.decompress(file);
+						default -> codec.verify(file);
+						};
+						bytesIn.addAndGet(compress ? result.getOriginalSize() : result.getCompressedSize());
+						bytesOut.addAndGet(compress ? result.getCompressedSize() : result.getOriginalSize());
+						System.out.println(file + (result.getOutput() != null ? " -> " + result.getOutput() : ": OK"));
+						return true;
+					} catch (IOException | RuntimeException e) {
+						System.err.println(file + ": " + e.getMessage());
+						return false;
+					} finally {
+						ioPermits.release();
+					}
+				}));
+			}
+		}
+
+		for (Future<Boolean> job : jobs) {
+			try {
+				success &= job.get();
+			} catch (Exception e) {
+				success = false;
+			}
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d files, %d bytes in, %d bytes out, %.2f s, %.1f MB/s%n", files.size(), bytesIn.get(),
+				bytesOut.get(), seconds, seconds > 0 ? bytesIn.get() / seconds / (1024 * 1024) : 0.0);
+		return success;
+	}
+
+	/**
+	 * The outputClashes method finds the files whose output path is also the
+	 * output of another file in the batch. The jobs run side by side, so one of
+	 * them would silently replace the other's output; instead every file of such
+	 * a group is reported and left out. A file whose output cannot be worked out
+	 * here, such as a damaged .huff file, is left to its job to report.
+	 **/
+	static Set<Path> outputClashes(HuffmanCodec codec, List<Path> files, String operation) {
+		Map<Path, List<Path>> inputs = new LinkedHashMap<>();
+		for (Path file : files) {
+			try {
+				Path output = switch (operation) {
+				case "compress" -> HuffmanCodec.compressedPath(file);
+				case "decompress" -> codec.decompressedPath(file);
+				default -> null;
+				};
+				if (output != null) {
+					inputs.computeIfAbsent(output.toAbsolutePath().normalize(), key -> new ArrayList<>()).add(file);
+				}
+			} catch (IOException | RuntimeException e) {
+				// Reported by the job
+			}
+		}
+
+		Set<Path> clashes = new HashSet<>();
+		for (Map.Entry<Path, List<Path>> output : inputs.entrySet()) {
+			if (output.getValue().size() > 1) {
+				for (Path file : output.getValue()) {
+					System.err.println(file + ": skipped, " + output.getValue().size() + " files would be written to "
+							+ output.getKey());
+				}
+				clashes.addAll(output.getValue());
+			}
+		}
+		return clashes;
+	}
+
+	/**
+	 * The runStream method handles "-" as the only path: it reads standard input
+	 * and writes standard output in a single pass, so the CLI can sit in a pipe.
+	 * Standard output carries only the data, so the summary goes to standard
+	 * error.
+	 **/
+	static boolean runStream(HuffmanCodec codec, String operation) {
+		boolean compress = operation.equals("compress");
+		try {
+			OutputStream out = operation.equals("verify") ? OutputStream.nullOutputStream()
+					: new BufferedOutputStream(new FileOutputStream(FileDescriptor.out));
+			CodecResult result = compress ? codec.compress(System.in, out) : codec.decompress(System.in, out);
+			System.err.printf("%d bytes in, %d bytes out, %.2f s%n",
+					compress ? result.getOriginalSize() : result.getCompressedSize(),
+					compress ? result.getCompressedSize() : result.getOriginalSize(), result.getElapsedNanos() / 1e9);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Error: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * The train method builds a dictionary from every file under the sample
+	 * paths and saves it, so small files compressed with -d later can skip
+	 * counting and leave the code lengths out of their headers.
+	 **/
+	static boolean train(String[] args) {
+		try {
+			Path dictionaryFile = Path.of(args[1]);
+			int id = 1;
+			int maxCodeLength = HuffmanTable.MAX_CODE_LENGTH;
+			List<Path> roots = new ArrayList<>();
+			for (int i = 2; i < args.length; i++) {
+				switch (args[i]) {
+				case "-i" -> id = Integer.parseInt(args[++i]);
+				case "-l" -> maxCodeLength = Integer.parseInt(args[++i]);
+				default -> roots.add(Path.of(args[i]));
+				}
+			}
+
+			List<Path> samples = collectFiles(roots, true);
+			HuffmanDictionary dictionary = HuffmanDictionary.train(id, samples, maxCodeLength);
+			dictionary.save(dictionaryFile);
+			System.out.println("Trained dictionary " + id + " on " + samples.size() + " files -> " + dictionaryFile);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Error: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * The read method writes length original bytes of one .huff file, starting
+	 * at offset, to standard output. Only the blocks holding the range are
+	 * decoded, and with a seek index only the part after the nearest checkpoint.
+	 **/
+	static boolean read(String[] args) {
+		try {
+			HuffmanCodec codec = new HuffmanCodec();
+			for (int i = 4; i < args.length; i++) {
+				switch (args[i]) {
+				case "-d" -> codec.setDictionary(HuffmanDictionary.load(Path.of(args[++i])));
+				default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+			byte[] data = codec.read(Path.of(args[1]), Long.parseLong(args[2]), Integer.parseInt(args[3]));
+			OutputStream out = new FileOutputStream(FileDescriptor.out);
+			out.write(data);
+			out.flush();
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Error: " + e.getMessage());
+			return false;
+		}
+	}
+
+	// Walk every root and keep the regular files that match the operation
+	static List<Path> collectFiles(List<Path> roots, boolean compress) throws IOException {
+		List<Path> files = new ArrayList<>();
+		for (Path root : roots) {
+			try (Stream<Path> paths = Files.walk(root)) {
+				paths.filter(Files::isRegularFile)
+						.filter(path -> path.toString().endsWith(HuffmanCodec.EXTENSION) != compress)
+						.forEach(files::add);
+			}
+		}
+		return files;
+	}
+
+	private static void printUsage() {
+		System.err.println("Usage: HuffmanCLI compress|decompress|verify [-j ioLimit] [-p parallelism]"
+				+ " [-b blockSize] [-l maxCodeLength] [--per-block-tables] [--interleaved] [--off-heap]"
+				+ " [--seek-index KB] [-d dictionary] <file or directory>... | -");
+		System.err.println("       HuffmanCLI train <dictionary> [-i id] [-l maxCodeLength]"
+				+ " <sample file or directory>...");
+		System.err.println("       HuffmanCLI read <file> <offset> <length> [-d dictionary]");
+	}
+}
@@ -0,0 +1,317 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class HuffmanCodec {
+
+	public static final String EXTENSION = ".huff";
+
+	private int blockSize = FileCompressor.DEFAULT_BLOCK_SIZE;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private boolean sharedTable = true;
+	private int maxCodeLength = HuffmanTable.MAX_CODE_LENGTH;
+	private HuffmanDictionary dictionary;
+	private boolean interleaved;
+	private boolean offHeap;
+	private int checkpointInterval;
+	private ProgressListener progressListener;
+
+	public HuffmanCodec() {
+	}
+
+	// A codec with the same settings as another one, but without its progress listener
+	public HuffmanCodec(HuffmanCodec settings) {
+		this.blockSize = settings.blockSize;
+		this.parallelism = settings.parallelism;
+		this.sharedTable = settings.sharedTable;
+		this.maxCodeLength = settings.maxCodeLength;
+		this.dictionary = settings.dictionary;
+		this.interleaved = settings.interleaved;
+		this.offHeap = settings.offHeap;
+		this.checkpointInterval = settings.checkpointInterval;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public void setBlockSize(int blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+		}
+		this.blockSize = blockSize;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	public boolean isSharedTable() {
+		return sharedTable;
+	}
+
+	public void setSharedTable(boolean sharedTable) {
+		this.sharedTable = sharedTable;
+	}
+
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	// Shorter limits make decoding tables smaller at a small cost in size
+	public void setMaxCodeLength(int maxCodeLength) {
+		if (maxCodeLength < 8 || maxCodeLength > HuffmanTable.MAX_CODE_LENGTH) {
+			throw new IllegalArgumentException(
+					"Maximum code length must be between 8 and " + HuffmanTable.MAX_CODE_LENGTH + ": " + maxCodeLength);
+		}
+		this.maxCodeLength = maxCodeLength;
+	}
+
+	public boolean isInterleaved() {
+		return interleaved;
+	}
+
+	// Four bitstreams per block: slightly larger output that decodes faster
+	public void setInterleaved(boolean interleaved) {
+		this.interleaved = interleaved;
+	}
+
+	public boolean isOffHeap() {
+		return offHeap;
+	}
+
+	// Compress straight from the memory-mapped input, keeping the blocks off the garbage collected heap
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	// A seek index with a checkpoint every checkpointInterval original bytes lets read decode only a range; 0 is off
+	public void setCheckpointInterval(int checkpointInterval) {
+		if (checkpointInterval < 0) {
+			throw new IllegalArgumentException("Checkpoint interval must not be negative: " + checkpointInterval);
+		}
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	public HuffmanDictionary getDictionary() {
+		return dictionary;
+	}
+
+	// Compress with a pre-trained table and require it to decompress; null turns it off
+	public void setDictionary(HuffmanDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	public ProgressListener getProgressListener() {
+		return progressListener;
+	}
+
+	// Told about every block of a .huff file compressed or decompressed; null turns it off
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	public CodecResult compress(Path input) throws IOException {
+		return compress(input, compressedPath(input));
+	}
+
+	/**
+	 * The compress method turns one file into a .huff file without any user
+	 * interface involved. It sets up a FileCompressor with this codec's block
+	 * size, parallelism and table mode, so every call works on its own
+	 * compressor and a single codec can be used by many threads at once. The
+	 * result tells how big the file was before and after and how long it took.
+	 **/
+	public CodecResult compress(Path input, Path output) throws IOException {
+		if (input.toString().endsWith(EXTENSION)) {
+			throw new IllegalArgumentException("Cannot compress a .huff file: " + input);
+		}
+
+		FileCompressor compressor = new FileCompressor();
+		compressor.setBlockSize(blockSize);
+		compressor.setParallelism(parallelism);
+		compressor.setSharedTable(sharedTable);
+		compressor.setMaxCodeLength(maxCodeLength);
+		compressor.setDictionary(dictionary);
+		compressor.setInterleaved(interleaved);
+		compressor.setOffHeap(offHeap);
+		compressor.setCheckpointInterval(checkpointInterval);
+		compressor.setProgressListener(progressListener);
+
+		long start = System.nanoTime();
+		long compressedSize;
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			compressedSize = compressor.compressFile(input.toString(), channel);
+		}
+		return new CodecResult(input, output, Files.size(input), compressedSize, System.nanoTime() - start,
+				compressor.getHuffmanTree(), compressor.getHuffmanTable(), compressor.getMetrics());
+	}
+
+	/**
+	 * The streaming compress method compresses input of unknown length, such as
+	 * standard input, in one pass with HuffmanStream. The code table adapts as
+	 * the data goes by, rebuilt every 64 KB or every block size bytes if that is
+	 * smaller, so no counting pass is needed. Dictionaries, interleaving and
+	 * per-block tables do not apply to this format. The result has no paths.
+	 **/
+	public CodecResult compress(InputStream input, OutputStream output) throws IOException {
+		long start = System.nanoTime();
+		CountingInputStream counter = new CountingInputStream(input);
+		long compressedSize = HuffmanStream.compress(counter, output,
+				Math.min(blockSize, HuffmanStream.DEFAULT_UPDATE_INTERVAL), maxCodeLength);
+		return new CodecResult(null, null, counter.count, compressedSize, System.nanoTime() - start, null, null);
+	}
+
+	public CodecResult decompress(InputStream input, OutputStream output) throws IOException {
+		long start = System.nanoTime();
+		CountingInputStream counter = new CountingInputStream(input);
+		long originalSize = HuffmanStream.decompress(counter, output);
+		return new CodecResult(null, null, originalSize, counter.count, System.nanoTime() - start, null, null);
+	}
+
+	public CodecResult decompress(Path input) throws IOException {
+		return decompress(input, decompressedPath(input));
+	}
+
+	public CodecResult decompress(Path input, Path output) throws IOException {
+		if (HuffmanStream.isStream(input)) {
+			try (InputStream is = new BufferedInputStream(Files.newInputStream(input));
+					OutputStream os = new BufferedOutputStream(Files.newOutputStream(output))) {
+				CodecResult result = decompress(is, os);
+				return new CodecResult(input, output, result.getOriginalSize(), result.getCompressedSize(),
+						result.getElapsedNanos(), null, null);
+			}
+		}
+
+		long start = System.nanoTime();
+		CodecMetrics metrics = new CodecMetrics();
+		HuffmanHeader header = FileDecompressor.decompressFile(input.toString(), output.toString(), parallelism,
+				dictionary, progressListener, metrics);
+		return new CodecResult(input, output, header.getOriginalLength(), Files.size(input),
+				System.nanoTime() - start, null, header.getTable(), metrics);
+	}
+
+	/**
+	 * The verify method decodes a .huff file without writing anything and
+	 * checks the CRC32C of every block and of the whole file, using this
+	 * codec's parallelism. It throws an IOException if the file is damaged. A
+	 * stream written by the streaming compress method has no checksums and is
+	 * simply decoded to the end.
+	 **/
+	public CodecResult verify(Path input) throws IOException {
+		long start = System.nanoTime();
+		long originalSize;
+		CodecMetrics metrics = null;
+		if (HuffmanStream.isStream(input)) {
+			try (InputStream is = new BufferedInputStream(Files.newInputStream(input))) {
+				originalSize = HuffmanStream.decompress(is, OutputStream.nullOutputStream());
+			}
+		} else {
+			metrics = new CodecMetrics();
+			originalSize = FileDecompressor.verifyFile(input.toString(), parallelism, dictionary, metrics)
+					.getOriginalLength();
+		}
+		return new CodecResult(input, null, originalSize, Files.size(input), System.nanoTime() - start, null, null,
+				metrics);
+	}
+
+	/**
+	 * The read method returns length original bytes of a .huff file starting at
+	 * offset, or fewer if the file ends first, by decoding only the blocks that
+	 * hold them, or only the part after the nearest checkpoint if the file has
+	 * a seek index. To read many ranges of one file, open a HuffmanFile once
+	 * instead.
+	 **/
+	public byte[] read(Path input, long offset, int length) throws IOException {
+		try (HuffmanFile file = HuffmanFile.open(input, dictionary)) {
+			return file.read(offset, length);
+		}
+	}
+
+	public static HuffmanHeader readHeader(Path input) throws IOException {
+		return readHeader(input, null);
+	}
+
+	public static HuffmanHeader readHeader(Path input, HuffmanDictionary dictionary) throws IOException {
+		try (InputStream is = Files.newInputStream(input)) {
+			return HuffmanHeader.read(new DataInputStream(new BufferedInputStream(is)), dictionary);
+		}
+	}
+
+	// "dir/name.txt" is compressed to "dir/name.huff"
+	public static Path compressedPath(Path input) {
+		return input.resolveSibling(getFileNameWithoutExtension(input.getFileName().toString()) + EXTENSION);
+	}
+
+	// Where decompress(input) puts its output; streams have no extension to restore
+	public Path decompressedPath(Path input) throws IOException {
+		if (HuffmanStream.isStream(input)) {
+			return input.resolveSibling(getFileNameWithoutExtension(input.getFileName().toString()) + "_decompressed");
+		}
+		return decompressedPath(input, readHeader(input, dictionary));
+	}
+
+	// "dir/name.huff" is restored to "dir/name_decompressed.<original extension>"
+	public static Path decompressedPath(Path input, HuffmanHeader header) {
+		String name = getFileNameWithoutExtension(input.getFileName().toString()) + "_decompressed";
+		if (!header.getExtension().isEmpty()) {
+			name += "." + header.getExtension();
+		}
+		return input.resolveSibling(name);
+	}
+
+	static String getFileNameWithoutExtension(String fileName) {
+		int lastIndex = fileName.lastIndexOf(".");
+		return lastIndex == -1 ? fileName : fileName.substring(0, lastIndex);
+	}
+
+	// Counts the bytes read through it, for streams whose length is not known up front
+	private static class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+	}
+}
@@ -0,0 +1,396 @@
+package application;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A HuffmanContext compresses and decompresses many small messages one after
+ * another while reusing all of its working memory. The tree is built with
+ * primitive arrays instead of Node, Heap and BinaryTree objects, and the code
+ * table, the decoder and the bit reader are rebuilt in place for every message,
+ * so once a context is warmed up compressing or decompressing a message
+ * allocates nothing. A context is not thread-safe; use one per thread.
+ *
+ * A message is the original length as a variable-length integer, the code
+ * lengths in the same packed form as the .huff header, and the encoded bits.
+ * With a dictionary set, the code lengths are replaced by the dictionary's id
+ * as a variable-length integer and its checksum, and no counting or tree
+ * building happens at all.
+ **/
+public class HuffmanContext {
+
+	private static final int NODES = 2 * HuffmanTable.SYMBOLS;
+
+	private final int maxCodeLength;
+
+	private final int[] frequencies = new int[HuffmanTable.SYMBOLS];
+	private final int[] lengths = new int[HuffmanTable.SYMBOLS];
+	private final long[] codes = new long[HuffmanTable.SYMBOLS];
+	private final long[] nextCode = new long[HuffmanTable.MAX_CODE_LENGTH + 1];
+
+	// Tree building: sorted (frequency << 8 | symbol) keys, node weights, parents and depths
+	private final long[] sortedLeaves = new long[HuffmanTable.SYMBOLS];
+	private final long[] weights = new long[NODES];
+	private final int[] parents = new int[NODES];
+	private final int[] depths = new int[NODES];
+
+	// Package-merge scratch space: the two latest lists and which items are leaves
+	private final long[] previousList = new long[NODES];
+	private final long[] currentList = new long[NODES];
+	private final boolean[][] isLeaf = new boolean[HuffmanTable.MAX_CODE_LENGTH + 1][NODES];
+
+	private final HuffmanDecoder decoder = new HuffmanDecoder();
+	private final BitReader reader = new BitReader(new byte[0], 0, 0);
+
+	private HuffmanDictionary dictionary;
+
+	public HuffmanContext() {
+		this(HuffmanTable.MAX_CODE_LENGTH);
+	}
+
+	public HuffmanContext(int maxCodeLength) {
+		if (maxCodeLength < 8 || maxCodeLength > HuffmanTable.MAX_CODE_LENGTH) {
+			throw new IllegalArgumentException(
+					"Maximum code length must be between 8 and " + HuffmanTable.MAX_CODE_LENGTH + ": " + maxCodeLength);
+		}
+		this.maxCodeLength = maxCodeLength;
+	}
+
+	public HuffmanDictionary getDictionary() {
+		return dictionary;
+	}
+
+	// Both sides must use the same dictionary; null goes back to a table per message
+	public void setDictionary(HuffmanDictionary dictionary) {
+		this.dictionary = dictionary;
+		if (dictionary != null) {
+			decoder.build(dictionary.getTable().lengths(), dictionary.getTable().codes());
+		}
+	}
+
+	// Largest message compress can produce for length input bytes without a dictionary
+	public static int maxCompressedLength(int length) {
+		return length + 5 + 2 + HuffmanTable.SYMBOLS / 2 + 8;
+	}
+
+	/**
+	 * The compress method encodes src[offset, offset + length) into dst starting
+	 * at dstOffset and returns the number of bytes written. It counts the bytes,
+	 * builds the code lengths and canonical codes in the context's own arrays and
+	 * writes the message. The exact size is known before any bit is written, so
+	 * an IllegalArgumentException is thrown up front if dst is too small.
+	 **/
+	public int compress(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		if (dictionary != null) {
+			return compressWithDictionary(src, offset, length, dst, dstOffset);
+		}
+
+		Arrays.fill(frequencies, 0);
+		for (int i = offset; i < offset + length; i++) {
+			frequencies[src[i] & 0xFF]++;
+		}
+		buildLengths();
+		HuffmanTable.canonicalCodes(lengths, codes, nextCode);
+
+		int symbolCount = 0;
+		long payloadBits = 0;
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			if (lengths[symbol] > 0) {
+				symbolCount = symbol + 1;
+				payloadBits += (long) lengths[symbol] * frequencies[symbol];
+			}
+		}
+		long needed = varIntSize(length) + 2 + (symbolCount + 1) / 2 + (payloadBits + 7) / 8;
+		if (needed > dst.length - dstOffset) {
+			throw new IllegalArgumentException("Destination too small: " + needed + " bytes needed.");
+		}
+
+		int position = writeVarInt(dst, dstOffset, length);
+		dst[position++] = (byte) (symbolCount >>> 8);
+		dst[position++] = (byte) symbolCount;
+		for (int symbol = 0; symbol < symbolCount; symbol += 2) {
+			int low = symbol + 1 < symbolCount ? lengths[symbol + 1] : 0;
+			dst[position++] = (byte) ((lengths[symbol] << 4) | low);
+		}
+		return encode(src, offset, length, lengths, codes, dst, position) - dstOffset;
+	}
+
+	// Skip counting; a dictionary codes every byte, so the payload is only sized when dst might be too small
+	private int compressWithDictionary(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+		int[] dictionaryLengths = dictionary.getTable().lengths();
+		if (dictionary.maxCompressedLength(length) > dst.length - dstOffset) {
+			long payloadBits = 0;
+			for (int i = offset; i < offset + length; i++) {
+				payloadBits += dictionaryLengths[src[i] & 0xFF];
+			}
+			long needed = varIntSize(length) + varIntSize(dictionary.getId()) + 4 + (payloadBits + 7) / 8;
+			if (needed > dst.length - dstOffset) {
+				throw new IllegalArgumentException("Destination too small: " + needed + " bytes needed.");
+			}
+		}
+
+		int position = writeVarInt(dst, dstOffset, length);
+		position = writeVarInt(dst, position, dictionary.getId());
+		int checksum = dictionary.getChecksum();
+		dst[position++] = (byte) (checksum >>> 24);
+		dst[position++] = (byte) (checksum >>> 16);
+		dst[position++] = (byte) (checksum >>> 8);
+		dst[position++] = (byte) checksum;
+		return encode(src, offset, length, dictionaryLengths, dictionary.getTable().codes(), dst, position)
+				- dstOffset;
+	}
+
+	// Write every code into dst through a 64-bit accumulator, three codes at a time
+	private static int encode(byte[] src, int offset, int length, int[] lengths, long[] codes, byte[] dst,
+			int position) {
+		long bitBuffer = 0;
+		int bitCount = 0;
+		int end = offset + length;
+		int i = offset;
+
+		for (; i + 3 <= end; i += 3) {
+			int s0 = src[i] & 0xFF;
+			int s1 = src[i + 1] & 0xFF;
+			int s2 = src[i + 2] & 0xFF;
+			int l1 = lengths[s1];
+			int l2 = lengths[s2];
+			bitBuffer = (((((bitBuffer << lengths[s0]) | codes[s0]) << l1) | codes[s1]) << l2) | codes[s2];
+			bitCount += lengths[s0] + l1 + l2;
+			while (bitCount >= 8) {
+				bitCount -= 8;
+				dst[position++] = (byte) (bitBuffer >>> bitCount);
+			}
+		}
+		for (; i < end; i++) {
+			int symbol = src[i] & 0xFF;
+			bitBuffer = (bitBuffer << lengths[symbol]) | codes[symbol];
+			bitCount += lengths[symbol];
+			while (bitCount >= 8) {
+				bitCount -= 8;
+				dst[position++] = (byte) (bitBuffer >>> bitCount);
+			}
+		}
+		if (bitCount > 0) {
+			dst[position++] = (byte) (bitBuffer << (8 - bitCount));
+		}
+		return position;
+	}
+
+	// Original length of the message at src[offset], to size the destination
+	public static int decompressedLength(byte[] src, int offset) throws IOException {
+		return decompressedLength(src, offset, src.length - offset);
+	}
+
+	// The same for a message known to end at offset + length
+	public static int decompressedLength(byte[] src, int offset, int length) throws IOException {
+		return readVarInt(src, offset, offset + length);
+	}
+
+	// Read a varint from src[offset, end); only the shortest form is accepted, so it takes varIntSize bytes
+	private static int readVarInt(byte[] src, int offset, int end) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			if (offset >= end) {
+				throw new EOFException("Message ended inside its header.");
+			}
+			int b = src[offset++];
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				if (value > Integer.MAX_VALUE || (b == 0 && shift > 0)) {
+					break;
+				}
+				return (int) value;
+			}
+		}
+		throw new IOException("Corrupt message: invalid header.");
+	}
+
+	/**
+	 * The decompress method decodes the message in src[offset, offset + length)
+	 * into dst starting at dstOffset and returns the number of bytes restored.
+	 * The code lengths are turned back into canonical codes and the context's
+	 * decoder and bit reader are rebuilt in place before decoding.
+	 **/
+	public int decompress(byte[] src, int offset, int length, byte[] dst, int dstOffset) throws IOException {
+		int end = offset + length;
+		int originalLength = decompressedLength(src, offset, length);
+		int position = offset + varIntSize(originalLength);
+		if (originalLength > dst.length - dstOffset) {
+			throw new IllegalArgumentException("Destination too small: " + originalLength + " bytes needed.");
+		}
+		if (dictionary != null) {
+			return decompressWithDictionary(src, position, end, dst, dstOffset, originalLength);
+		}
+		if (position + 2 > end) {
+			throw new EOFException("Message ended inside its code lengths.");
+		}
+
+		int symbolCount = ((src[position] & 0xFF) << 8) | (src[position + 1] & 0xFF);
+		position += 2;
+		if (symbolCount > HuffmanTable.SYMBOLS || position + (symbolCount + 1) / 2 > end) {
+			throw new IOException("Corrupt message: " + symbolCount + " code lengths.");
+		}
+		Arrays.fill(lengths, 0);
+		for (int symbol = 0; symbol < symbolCount; symbol += 2) {
+			int packed = src[position++] & 0xFF;
+			lengths[symbol] = packed >>> 4;
+			if (symbol + 1 < symbolCount) {
+				lengths[symbol + 1] = packed & 0x0F;
+			}
+		}
+		try {
+			HuffmanTable.canonicalCodes(lengths, codes, nextCode);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt message: " + e.getMessage(), e);
+		}
+
+		decoder.build(lengths, codes);
+		return decodePayload(src, position, end, dst, dstOffset, originalLength);
+	}
+
+	// The decoder was already built from the dictionary when it was set
+	private int decompressWithDictionary(byte[] src, int position, int end, byte[] dst, int dstOffset,
+			int originalLength) throws IOException {
+		int id = readVarInt(src, position, end);
+		position += varIntSize(id);
+		if (position + 4 > end) {
+			throw new EOFException("Message ended inside its header.");
+		}
+		int checksum = ((src[position] & 0xFF) << 24) | ((src[position + 1] & 0xFF) << 16)
+				| ((src[position + 2] & 0xFF) << 8) | (src[position + 3] & 0xFF);
+		if (!dictionary.matches(id, checksum)) {
+			throw new IOException("Message was compressed with dictionary " + id + ", not with dictionary "
+					+ dictionary.getId() + " or a different version of it.");
+		}
+		return decodePayload(src, position + 4, end, dst, dstOffset, originalLength);
+	}
+
+	private int decodePayload(byte[] src, int position, int end, byte[] dst, int dstOffset, int originalLength)
+			throws IOException {
+		reader.reset(src, position, end - position);
+		if (decoder.decode(reader, dst, dstOffset, originalLength) != originalLength) {
+			throw new EOFException("Message ended before " + originalLength + " bytes were decoded.");
+		}
+		return originalLength;
+	}
+
+	/**
+	 * The buildLengths method builds the Huffman tree with the two-queue method.
+	 * The used bytes are sorted by frequency into one queue; the combined nodes
+	 * are created in order of increasing weight, so they form a second sorted
+	 * queue on their own. The two lightest nodes are always at the front of one
+	 * of the queues, so no heap is needed. Depths are then filled in from the
+	 * root down through the parent links. If the tree is deeper than the limit,
+	 * the lengths are recomputed with package-merge.
+	 **/
+	private void buildLengths() {
+		Arrays.fill(lengths, 0);
+		int n = 0;
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			if (frequencies[symbol] > 0) {
+				sortedLeaves[n++] = ((long) frequencies[symbol] << 8) | symbol;
+			}
+		}
+		if (n == 0) {
+			return;
+		}
+		if (n == 1) {
+			lengths[(int) (sortedLeaves[0] & 0xFF)] = 1;
+			return;
+		}
+		Arrays.sort(sortedLeaves, 0, n);
+
+		for (int i = 0; i < n; i++) {
+			weights[i] = sortedLeaves[i] >>> 8;
+		}
+		int leaf = 0;
+		int node = n;
+		for (int next = n; next < 2 * n - 1; next++) {
+			int first = leaf < n && (node >= next || weights[leaf] <= weights[node]) ? leaf++ : node++;
+			int second = leaf < n && (node >= next || weights[leaf] <= weights[node]) ? leaf++ : node++;
+			weights[next] = weights[first] + weights[second];
+			parents[first] = next;
+			parents[second] = next;
+		}
+
+		int root = 2 * n - 2;
+		depths[root] = 0;
+		int maxDepth = 0;
+		for (int i = root - 1; i >= 0; i--) {
+			depths[i] = depths[parents[i]] + 1;
+			if (i < n) {
+				maxDepth = Math.max(maxDepth, depths[i]);
+			}
+		}
+
+		if (maxDepth <= maxCodeLength) {
+			for (int i = 0; i < n; i++) {
+				lengths[(int) (sortedLeaves[i] & 0xFF)] = depths[i];
+			}
+		} else {
+			packageMerge(n);
+		}
+	}
+
+	// Same algorithm as HuffmanTable.packageMerge, on the context's scratch arrays
+	private void packageMerge(int n) {
+		int previousLength = n;
+		for (int i = 0; i < n; i++) {
+			previousList[i] = weights[i];
+			isLeaf[maxCodeLength][i] = true;
+		}
+
+		for (int level = maxCodeLength - 1; level >= 1; level--) {
+			int packages = previousLength / 2;
+			int currentLength = n + packages;
+			int leaf = 0;
+			int pack = 0;
+			for (int i = 0; i < currentLength; i++) {
+				long packageWeight = pack < packages ? previousList[2 * pack] + previousList[2 * pack + 1]
+						: Long.MAX_VALUE;
+				if (leaf < n && weights[leaf] <= packageWeight) {
+					currentList[i] = weights[leaf++];
+					isLeaf[level][i] = true;
+				} else {
+					currentList[i] = packageWeight;
+					isLeaf[level][i] = false;
+					pack++;
+				}
+			}
+			System.arraycopy(currentList, 0, previousList, 0, currentLength);
+			previousLength = currentLength;
+		}
+
+		int taken = 2 * n - 2;
+		for (int level = 1; level <= maxCodeLength && taken > 0; level++) {
+			int leaf = 0;
+			int packages = 0;
+			for (int i = 0; i < taken; i++) {
+				if (isLeaf[level][i]) {
+					lengths[(int) (sortedLeaves[leaf++] & 0xFF)]++;
+				} else {
+					packages++;
+				}
+			}
+			taken = 2 * packages;
+		}
+	}
+
+	private static int varIntSize(int value) {
+		int size = 1;
+		while ((value >>>= 7) != 0) {
+			size++;
+		}
+		return size;
+	}
+
+	private static int writeVarInt(byte[] dst, int position, int value) {
+		while ((value & ~0x7F) != 0) {
+			dst[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dst[position++] = (byte) value;
+		return position;
+	}
+}
@@ -0,0 +1,271 @@
+package application;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+public class HuffmanDecoder {
+
+	static final int LOOKUP_BITS = 11;
+	private static final int LOOKUP_MASK = (1 << LOOKUP_BITS) - 1;
+
+	// Number of bitstreams an interleaved block is split into
+	static final int STREAMS = 4;
+	private static final VarHandle LONG_BIG_ENDIAN = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.BIG_ENDIAN);
+
+	// Entries > 0 hold (code length << 16 | symbol), entries < 0 hold -node for
+	// codes longer than LOOKUP_BITS and 0 marks a bit pattern that is no code
+	private final int[] lookup = new int[1 << LOOKUP_BITS];
+
+	// Flattened decoding tree: children[2 * node + bit] is the next node, a leaf
+	// is stored as ~symbol and 0 means there is no such branch
+	private final int[] children = new int[4 * HuffmanTable.SYMBOLS];
+
+	/**
+	 * The decoder is built from the code table in two steps. First every code is
+	 * inserted into a small tree kept in a flat int array. Then every possible
+	 * LOOKUP_BITS-bit pattern is walked through that tree once: if a leaf is
+	 * reached the lookup entry records the symbol and how many bits its code
+	 * really uses, otherwise it records the tree node where decoding has to
+	 * continue bit by bit. Most symbols are therefore decoded with a single
+	 * table access, and only rare long codes take the slow path.
+	 **/
+	public HuffmanDecoder(HuffmanTable table) {
+		build(table.lengths(), table.codes());
+	}
+
+	// An empty decoder that a HuffmanContext fills with build for every message
+	HuffmanDecoder() {
+	}
+
+	final void build(int[] lengths, long[] codes) {
+		Arrays.fill(children, 0);
+		Arrays.fill(lookup, 0);
+		int nodeCount = 1;
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			int length = lengths[symbol];
+			if (length == 0)
+				continue;
+
+			long code = codes[symbol];
+			int node = 0;
+			for (int bit = length - 1; bit > 0; bit--) {
+				int slot = 2 * node + (int) ((code >>> bit) & 1);
+				if (children[slot] == 0) {
+					children[slot] = nodeCount++;
+				}
+				node = children[slot];
+			}
+			children[2 * node + (int) (code & 1)] = ~symbol;
+		}
+
+		for (int index = 0; index < lookup.length; index++) {
+			int node = 0;
+			for (int depth = 1; depth <= LOOKUP_BITS; depth++) {
+				int next = children[2 * node + ((index >>> (LOOKUP_BITS - depth)) & 1)];
+				if (next < 0) {
+					lookup[index] = (depth << 16) | ~next;
+					break;
+				}
+				if (next == 0)
+					break;
+				node = next;
+				if (depth == LOOKUP_BITS) {
+					lookup[index] = -node;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The decode method fills out with up to length decoded bytes and returns how
+	 * many it produced. Every byte is resolved by decodeSymbol, mostly with a
+	 * single table access. It returns fewer bytes than requested once the input
+	 * runs out, and leaves any trailing padding bits that do not form a complete
+	 * code unread.
+	 **/
+	public int decode(BitReader reader, byte[] out, int offset, int length) throws IOException {
+		int end = offset + length;
+		int i = offset;
+
+		while (i < end) {
+			int symbol = decodeSymbol(reader);
+			if (symbol < 0)
+				break;
+			out[i++] = (byte) symbol;
+		}
+		return i - offset;
+	}
+
+	/**
+	 * The decodeInterleaved method decodes a block that was split into STREAMS
+	 * equal segments, each encoded as its own bitstream; the streams lie one
+	 * after another in data starting at offset and have the given sizes.
+	 * Decoding one stream is a chain where every lookup has to wait for the
+	 * previous code's length, so the main loop keeps the bits of all four
+	 * streams in local variables and takes symbols from each of them in turn.
+	 * The four chains do not depend on each other and the CPU can work on them
+	 * at the same time. Every stream is refilled with one 8-byte read, which
+	 * leaves at least 56 bits, enough for three codes of up to 15 bits, so the
+	 * three symbols per stream after a refill need no checks at all. Near the
+	 * end of the streams the rest is decoded one stream at a time with the
+	 * normal decode. An EOFException is thrown if any stream ends early.
+	 **/
+	public void decodeInterleaved(byte[] data, int offset, int[] sizes, byte[] out, int outOffset, int length)
+			throws IOException {
+		int segment = segmentSize(length);
+		int end = outOffset + length;
+		int p0 = outOffset;
+		int p1 = Math.min(end, p0 + segment);
+		int p2 = Math.min(end, p1 + segment);
+		int p3 = Math.min(end, p2 + segment);
+		int q0 = offset;
+		int q1 = q0 + sizes[0];
+		int q2 = q1 + sizes[1];
+		int q3 = q2 + sizes[2];
+		int[] limits = { q1, q2, q3, q3 + sizes[3] };
+		long b0 = 0, b1 = 0, b2 = 0, b3 = 0;
+		int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+
+		while (end - p3 >= 3 && q0 + 8 <= limits[0] && q1 + 8 <= limits[1] && q2 + 8 <= limits[2]
+				&& q3 + 8 <= limits[3]) {
+			int k0 = ((63 - c0) >>> 3) << 3;
+			int k1 = ((63 - c1) >>> 3) << 3;
+			int k2 = ((63 - c2) >>> 3) << 3;
+			int k3 = ((63 - c3) >>> 3) << 3;
+			b0 = (b0 << k0) | (((long) LONG_BIG_ENDIAN.get(data, q0) >>> 8) >>> (56 - k0));
+			b1 = (b1 << k1) | (((long) LONG_BIG_ENDIAN.get(data, q1) >>> 8) >>> (56 - k1));
+			b2 = (b2 << k2) | (((long) LONG_BIG_ENDIAN.get(data, q2) >>> 8) >>> (56 - k2));
+			b3 = (b3 << k3) | (((long) LONG_BIG_ENDIAN.get(data, q3) >>> 8) >>> (56 - k3));
+			q0 += k0 >>> 3;
+			q1 += k1 >>> 3;
+			q2 += k2 >>> 3;
+			q3 += k3 >>> 3;
+			c0 += k0;
+			c1 += k1;
+			c2 += k2;
+			c3 += k3;
+
+			for (int round = 0; round < 3; round++) {
+				int r0 = decodeStep(b0, c0);
+				int r1 = decodeStep(b1, c1);
+				int r2 = decodeStep(b2, c2);
+				int r3 = decodeStep(b3, c3);
+				c0 = r0 >>> 8;
+				c1 = r1 >>> 8;
+				c2 = r2 >>> 8;
+				c3 = r3 >>> 8;
+				out[p0++] = (byte) r0;
+				out[p1++] = (byte) r1;
+				out[p2++] = (byte) r2;
+				out[p3++] = (byte) r3;
+			}
+		}
+
+		int[] positions = { q0, q1, q2, q3 };
+		long[] bits = { b0, b1, b2, b3 };
+		int[] counts = { c0, c1, c2, c3 };
+		int[] outputs = { p0, p1, p2, p3 };
+		for (int stream = 0; stream < STREAMS; stream++) {
+			BitReader reader = new BitReader(data, positions[stream], limits[stream] - positions[stream]);
+			reader.bitBuffer = bits[stream];
+			reader.bitCount = counts[stream];
+			int streamEnd = Math.min(end, outOffset + (stream + 1) * segment);
+			int remaining = streamEnd - outputs[stream];
+			if (remaining > 0 && decode(reader, out, outputs[stream], remaining) != remaining) {
+				throw new EOFException("Interleaved stream " + stream + " ended early.");
+			}
+		}
+	}
+
+	/**
+	 * The decodeStep method decodes one symbol from the top count bits of bits,
+	 * which must hold at least MAX_CODE_LENGTH bits. It returns the number of
+	 * bits left after the code shifted left by 8, with the symbol in the low
+	 * byte, so both fit in one int and stay in registers.
+	 **/
+	private int decodeStep(long bits, int count) throws IOException {
+		int entry = lookup[(int) (bits >>> (count - LOOKUP_BITS)) & LOOKUP_MASK];
+		if (entry > 0) {
+			return ((count - (entry >>> 16)) << 8) | (entry & 0xFF);
+		}
+		return decodeLongStep(bits, count - LOOKUP_BITS, entry);
+	}
+
+	// The rare codes longer than LOOKUP_BITS, kept apart so decodeStep stays small
+	private int decodeLongStep(long bits, int count, int entry) throws IOException {
+		if (entry == 0) {
+			throw new IOException("Corrupt Huffman data: invalid code.");
+		}
+		int node = -entry;
+		while (true) {
+			int next = children[2 * node + (int) ((bits >>> --count) & 1)];
+			if (next < 0)
+				return (count << 8) | ~next;
+			if (next == 0)
+				throw new IOException("Corrupt Huffman data: invalid code.");
+			node = next;
+		}
+	}
+	// Bytes per stream: every stream but the last holds a full segment
+	static int segmentSize(int length) {
+		return (length + STREAMS - 1) / STREAMS;
+	}
+
+	/**
+	 * The decodeSymbol method peeks at the next LOOKUP_BITS bits of the reader,
+	 * resolves the symbol with one table access and then drops only as many bits
+	 * as that symbol's code actually uses. It returns -1 once the input runs out
+	 * and only padding bits that do not form a complete code are left.
+	 **/
+	private int decodeSymbol(BitReader reader) throws IOException {
+		if (reader.bitCount < LOOKUP_BITS) {
+			reader.refill();
+			if (reader.bitCount == 0)
+				return -1;
+		}
+
+		long bits = reader.bitBuffer;
+		int count = reader.bitCount;
+		int index = count >= LOOKUP_BITS ? (int) (bits >>> (count - LOOKUP_BITS)) & LOOKUP_MASK
+				: (int) (bits << (LOOKUP_BITS - count)) & LOOKUP_MASK;
+		int entry = lookup[index];
+
+		if (entry > 0) {
+			int codeLength = entry >>> 16;
+			if (codeLength > count)
+				return -1; // Only padding is left
+			reader.bitCount = count - codeLength;
+			return entry & 0xFF;
+		} else if (count < LOOKUP_BITS) {
+			return -1; // Only padding is left
+		} else if (entry < 0) {
+			reader.bitCount = count - LOOKUP_BITS;
+			return decodeLongCode(reader, -entry);
+		} else {
+			throw new IOException("Corrupt Huffman data: invalid code.");
+		}
+	}
+
+	// Walk the decoding tree one bit at a time for codes longer than LOOKUP_BITS
+	private int decodeLongCode(BitReader reader, int node) throws IOException {
+		while (true) {
+			if (reader.bitCount == 0) {
+				reader.refill();
+				if (reader.bitCount == 0)
+					return -1;
+			}
+			int bit = (int) (reader.bitBuffer >>> --reader.bitCount) & 1;
+			int next = children[2 * node + bit];
+			if (next < 0)
+				return ~next;
+			if (next == 0)
+				throw new IOException("Corrupt Huffman data: invalid code.");
+			node = next;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * A HuffmanDictionary is a code table trained once on sample data and then
+ * shared by the compressor and decompressor, so small inputs can be encoded
+ * without counting their bytes first and without storing code lengths. Output
+ * made with a dictionary only records its id and a checksum of its code
+ * lengths, and can only be restored with the same dictionary.
+ *
+ * Every byte value must have a code in the table, since the inputs a
+ * dictionary is used for are never counted; a table that leaves a byte out is
+ * rejected when the dictionary is created or loaded.
+ **/
+public class HuffmanDictionary {
+
+	public static final int MAGIC = 0x48444943; // "HDIC"
+
+	private final int id;
+	private final HuffmanTable table;
+	private final int checksum;
+
+	public HuffmanDictionary(int id, HuffmanTable table) {
+		if (id <= 0) {
+			throw new IllegalArgumentException("Dictionary id must be positive: " + id);
+		}
+		int missing = missingSymbol(table);
+		if (missing >= 0) {
+			throw new IllegalArgumentException("Byte '" + missing + "' has no code in the dictionary.");
+		}
+		this.id = id;
+		this.table = table;
+		this.checksum = checksum(table);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public HuffmanTable getTable() {
+		return table;
+	}
+
+	public int getChecksum() {
+		return checksum;
+	}
+
+	// Largest message a HuffmanContext using this dictionary can produce for length input bytes
+	public int maxCompressedLength(int length) {
+		return (int) Math.min(Integer.MAX_VALUE, 5 + 5 + 4 + ((long) length * table.getMaxLength() + 7) / 8);
+	}
+
+	public boolean matches(int id, int checksum) {
+		return this.id == id && this.checksum == checksum;
+	}
+
+	/**
+	 * The train method builds a dictionary from sample files. The byte counts of
+	 * all samples are added up, and every byte value gets at least a count of
+	 * one so that data the samples never showed can still be encoded, only with
+	 * a longer code. The counts stay 64-bit, so samples of any size can be used.
+	 **/
+	public static HuffmanDictionary train(int id, Iterable<Path> samples, int maxCodeLength) throws IOException {
+		long[] frequencies = new long[HuffmanTable.SYMBOLS];
+		for (Path sample : samples) {
+			long[] counts = FrequencyCounter.count(sample);
+			for (int symbol = 0; symbol < frequencies.length; symbol++) {
+				frequencies[symbol] += counts[symbol];
+			}
+		}
+		return train(id, frequencies, maxCodeLength);
+	}
+
+	public static HuffmanDictionary train(int id, long[] frequencies, int maxCodeLength) {
+		long[] smoothed = new long[HuffmanTable.SYMBOLS];
+		for (int symbol = 0; symbol < smoothed.length; symbol++) {
+			smoothed[symbol] = Math.addExact(frequencies[symbol], 1);
+		}
+		return new HuffmanDictionary(id, HuffmanTable.fromFrequencies(smoothed, maxCodeLength));
+	}
+
+	// Magic number, id, the packed code lengths and their checksum
+	public void save(Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(id);
+			HuffmanHeader.writeLengths(out, table);
+			out.writeInt(checksum);
+		}
+	}
+
+	public static HuffmanDictionary load(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a Huffman dictionary: " + file);
+			}
+			int id = in.readInt();
+			if (id <= 0) {
+				throw new IOException("Corrupt dictionary: id " + id + ".");
+			}
+			HuffmanTable table = HuffmanHeader.readLengths(in);
+			int missing = missingSymbol(table);
+			if (missing >= 0) {
+				throw new IOException("Corrupt dictionary: byte '" + missing + "' has no code.");
+			}
+			HuffmanDictionary dictionary = new HuffmanDictionary(id, table);
+			if (in.readInt() != dictionary.checksum) {
+				throw new IOException("Corrupt dictionary: checksum mismatch.");
+			}
+			return dictionary;
+		}
+	}
+
+	// The first byte value without a code, or -1 if the table covers all of them
+	private static int missingSymbol(HuffmanTable table) {
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			if (table.getLength(symbol) == 0) {
+				return symbol;
+			}
+		}
+		return -1;
+	}
+
+	// CRC32 of the 256 code lengths, so two different tables with the same id are told apart
+	static int checksum(HuffmanTable table) {
+		CRC32 crc = new CRC32();
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			crc.update(table.getLength(symbol));
+		}
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,215 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A HuffmanFile gives random access to the original bytes of a block-mode
+ * .huff file without restoring the whole file. Opening it reads only the
+ * header and the block index; read then finds the blocks that hold the
+ * requested range with the index and decodes only those.
+ *
+ * Files written with a seek index (FileCompressor.setCheckpointInterval) also
+ * carry checkpoints: for every few KB of original data the bit in the file
+ * where the code of the byte there starts. A read then starts decoding at the
+ * last checkpoint before the range and stops at its end, so it costs about
+ * the range plus one checkpoint interval, however large the blocks are. Files
+ * without a seek index are read a whole block at a time.
+ *
+ * Reads use positional reads on one FileChannel and keep no state between
+ * calls, so several threads can read from the same HuffmanFile at once. Only
+ * the data of whole blocks can be compared with the CRC32C in their frames, so
+ * range reads do not check checksums; FileDecompressor.verifyFile does.
+ **/
+public class HuffmanFile implements Closeable {
+
+	// Original size, payload size, type, checksum and up to 256 packed code lengths
+	private static final int MAX_FRAME_HEAD = 4 + 4 + 1 + 4 + 2 + HuffmanTable.SYMBOLS / 2;
+
+	private final FileChannel channel;
+	private final HuffmanHeader header;
+	private final BlockIndex index;
+	private final HuffmanDecoder sharedDecoder;
+
+	private HuffmanFile(FileChannel channel, HuffmanHeader header, BlockIndex index) {
+		this.channel = channel;
+		this.header = header;
+		this.index = index;
+		this.sharedDecoder = header.isSharedTable() ? new HuffmanDecoder(header.getTable()) : null;
+	}
+
+	public static HuffmanFile open(Path path) throws IOException {
+		return open(path, null);
+	}
+
+	// The dictionary is only needed for files that were compressed with one
+	public static HuffmanFile open(Path path, HuffmanDictionary dictionary) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			HuffmanHeader header = HuffmanHeader.read(new DataInputStream(
+					new BufferedInputStream(Channels.newInputStream(channel.position(0)))), dictionary);
+			BlockIndex index = BlockIndex.read(channel, header.getBlockSize(), header.hasSeekIndex());
+			if (index.getOriginalLength() != header.getOriginalLength()) {
+				throw new IOException("Corrupt block index: blocks hold " + index.getOriginalLength() + " of "
+						+ header.getOriginalLength() + " bytes.");
+			}
+			return new HuffmanFile(channel, header, index);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public HuffmanHeader getHeader() {
+		return header;
+	}
+
+	// Size of the original file
+	public long length() {
+		return header.getOriginalLength();
+	}
+
+	public boolean hasSeekIndex() {
+		return header.hasSeekIndex();
+	}
+
+	// Up to length original bytes starting at offset; fewer near the end of the file
+	public byte[] read(long offset, int length) throws IOException {
+		if (offset < 0 || length < 0 || offset > length()) {
+			throw new IllegalArgumentException("Cannot read " + length + " bytes at " + offset + " of " + length());
+		}
+		byte[] data = new byte[(int) Math.min(length, length() - offset)];
+		read(offset, data, 0, data.length);
+		return data;
+	}
+
+	/**
+	 * The read method fills b from off with the len original bytes starting at
+	 * offset, which have to lie inside the file. It works through the range one
+	 * block at a time, and in an interleaved block one stream at a time.
+	 **/
+	public void read(long offset, byte[] b, int off, int len) throws IOException {
+		Objects.checkFromIndexSize(off, len, b.length);
+		if (offset < 0 || offset > length() - len) {
+			throw new IllegalArgumentException("Cannot read " + len + " bytes at " + offset + " of " + length());
+		}
+		while (len > 0) {
+			int block = index.findBlock(offset);
+			int count = readBlock(block, (int) (offset - index.getOriginalStart(block)), b, off, len);
+			offset += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Restore up to len bytes from position start of block into b and return how many
+	private int readBlock(int block, int start, byte[] b, int off, int len) throws IOException {
+		long frameOffset = index.getOffset(block);
+		int frameSize = index.getCompressedSize(block);
+		int originalSize = index.getOriginalSize(block);
+		byte[] head = BlockIndex.readFully(channel, frameOffset, Math.min(MAX_FRAME_HEAD, frameSize)).array();
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(head));
+		int payloadSize = dis.readInt() == originalSize ? dis.readInt() : -1;
+		if (payloadSize < 0) {
+			throw new IOException("Corrupt block " + block + ".");
+		}
+		int type = dis.readUnsignedByte();
+		dis.readInt(); // The checksum covers the whole block
+		HuffmanDecoder decoder = sharedDecoder;
+		if (type == HuffmanHeader.BLOCK_HUFFMAN && sharedDecoder == null) {
+			decoder = new HuffmanDecoder(HuffmanHeader.readLengths(dis));
+		}
+		int payloadOffset = head.length - dis.available();
+		if (payloadOffset + payloadSize > frameSize) {
+			throw new IOException("Corrupt block " + block + ".");
+		}
+		int count = Math.min(len, originalSize - start);
+
+		switch (type) {
+		case HuffmanHeader.BLOCK_RAW -> {
+			if (payloadSize != originalSize) {
+				throw new IOException("Corrupt raw block: " + payloadSize + " of " + originalSize + " bytes.");
+			}
+			BlockIndex.readFully(channel, frameOffset + payloadOffset + start,
+					ByteBuffer.wrap(b, off, count).slice());
+			return count;
+		}
+		case HuffmanHeader.BLOCK_RUN -> {
+			if (payloadSize != 1) {
+				throw new IOException("Corrupt run block: " + payloadSize + " bytes.");
+			}
+			Arrays.fill(b, off, off + count, head[payloadOffset]);
+			return count;
+		}
+		case HuffmanHeader.BLOCK_HUFFMAN -> {
+			// Every stream of an interleaved block is a bitstream of its own with checkpoints of its own
+			int segment = header.isInterleaved() ? HuffmanDecoder.segmentSize(originalSize) : originalSize;
+			int checkpoint = index.findCheckpoint(index.getOriginalStart(block) + start);
+			long from = checkpoint < 0 ? -1 : index.getCheckpointOffset(checkpoint) - index.getOriginalStart(block);
+			if (from < 0 || from / segment != start / segment) {
+				return readWholeBlock(block, decoder, frameOffset + payloadOffset, payloadSize, start, b, off,
+						count);
+			}
+			count = Math.min(count, (start / segment + 1) * segment - start);
+			long bit = index.getCheckpointBit(checkpoint);
+			long payloadEnd = frameOffset + payloadOffset + payloadSize;
+			if (bit < 8 * (frameOffset + payloadOffset) || bit > 8 * payloadEnd) {
+				throw new IOException(
+						"Corrupt seek index: checkpoint " + checkpoint + " is outside block " + block + ".");
+			}
+			decodeRange(decoder, bit, payloadEnd, (int) (start - from), b, off, count);
+			return count;
+		}
+		default -> throw new IOException("Corrupt block: unknown type " + type + ".");
+		}
+	}
+
+	/**
+	 * The decodeRange method decodes skip bytes and then count bytes into b,
+	 * starting at the code that begins at bit of the file. No code is longer
+	 * than HuffmanTable.MAX_CODE_LENGTH bits, which bounds the bytes needed, so
+	 * only those are read instead of the rest of the stream.
+	 **/
+	private void decodeRange(HuffmanDecoder decoder, long bit, long payloadEnd, int skip, byte[] b, int off,
+			int count) throws IOException {
+		long first = bit >>> 3;
+		long bits = (bit & 7) + (long) HuffmanTable.MAX_CODE_LENGTH * (skip + count);
+		int size = (int) Math.min(payloadEnd - first, (bits + 7) / 8);
+		byte[] data = BlockIndex.readFully(channel, first, size).array();
+		BitReader reader = new BitReader(data, 0, size);
+		reader.skipBits((int) (bit & 7));
+		int decoded = decoder.decode(reader, new byte[skip], 0, skip);
+		if (decoded == skip) {
+			decoded += decoder.decode(reader, b, off, count);
+		}
+		if (decoded != skip + count) {
+			throw new EOFException("Stream ended after " + decoded + " of " + (skip + count) + " bytes.");
+		}
+	}
+
+	// Without checkpoints the whole block is restored and the range copied out of it
+	private int readWholeBlock(int block, HuffmanDecoder decoder, long payloadPosition, int payloadSize, int start,
+			byte[] b, int off, int count) throws IOException {
+		byte[] payload = BlockIndex.readFully(channel, payloadPosition, payloadSize).array();
+		byte[] data = new byte[index.getOriginalSize(block)];
+		FileDecompressor.decodeBlock(decoder, payload, 0, payloadSize, data, data.length, header.isInterleaved());
+		System.arraycopy(data, start, b, off, count);
+		return count;
+	}
+}
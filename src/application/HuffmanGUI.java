@@ -4,6 +4,8 @@ import javafx.application.Application;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextArea;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
@@ -13,6 +15,9 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HuffmanGUI extends Application {
 	public enum OperationType {
@@ -20,12 +25,25 @@ public class HuffmanGUI extends Application {
 	}
 
 	private TextArea resultArea;
+	private ProgressBar progressBar;
+	private Label statusLabel;
+	private Button cancelButton;
+	// Jobs run one after another; each uses all cores through the codec's own threads
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "huffman-gui-worker");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private CodecTask runningTask;
+	private int waitingTasks;
 	private String selectedFilePathForCompression = "";
 	private String selectedFilePathForDecompression = "";
 	private String compressedFilePath = "";
-	FileCompressor compressor = new FileCompressor();
-	long fileSize;
-	long compressedFileSize;
+	HuffmanCodec codec = new HuffmanCodec();
+	BinaryTree huffmanTree;
+	// The last job that finished, for the Statistic panel
+	CodecResult lastResult;
+	OperationType lastOperation;
 
 	private OperationType operation;
 
@@ -33,6 +51,11 @@ public class HuffmanGUI extends Application {
 		launch(args);
 	}
 
+	@Override
+	public void stop() {
+		worker.shutdownNow();
+	}
+
 	@Override
 	public void start(Stage primaryStage) {
 		Button compressButton = createStyledButton("Compress");
@@ -42,6 +65,19 @@ public class HuffmanGUI extends Application {
 		Button statisticButton = createStyledButton("Statistic");
 		Button huffmanButton = createStyledButton("Huffman");
 		Button headerButton = createStyledButton("Header");
+		cancelButton = createStyledButton("Cancel");
+		cancelButton.setVisible(false);
+		cancelButton.setOnAction(event -> {
+			if (runningTask != null) {
+				runningTask.cancel();
+			}
+		});
+
+		progressBar = new ProgressBar(0);
+		progressBar.setPrefWidth(320);
+		progressBar.setVisible(false);
+		statusLabel = new Label("");
+		statusLabel.setFont(new Font("Courier New", 13));
 
 		browseButton.setVisible(false);
 		statisticButton.setVisible(false);
@@ -77,15 +113,14 @@ public class HuffmanGUI extends Application {
 
 		huffmanButton.setOnAction(event -> {
 			resultArea.clear();
-			if (!selectedFilePathForCompression.isEmpty()) {
-				resultArea.setText("HUFFMAN CODE:\n" + compressor.getHuffmanTree().inorderTraversal());
+			if (huffmanTree != null) {
+				resultArea.setText("HUFFMAN CODE:\n" + huffmanTree.inorderTraversal());
 			} else {
 				resultArea.setText("Error: Please select a file first using the Browse button.");
 			}
 		});
 
 		startButton.setOnAction(event -> {
-			resultArea.clear();
 			if (operation == OperationType.DECOMPRESSOR) {
 				if (selectedFilePathForDecompression != null) {
 					handleDecompression(primaryStage, selectedFilePathForDecompression);
@@ -103,15 +138,21 @@ public class HuffmanGUI extends Application {
 
 		statisticButton.setOnAction(event -> {
 			resultArea.clear();
-			double compressionRatio = (double) compressedFileSize / fileSize;
-			if (operation == OperationType.COMPRESSOR) {
-				if (selectedFilePathForCompression != null) {
-					resultArea.setText("FILE SIZE BEFORE COMPRESSION: " + fileSize
-							+ " Byte.\nFILE SIZE AFTER COMPRESSION: " + compressedFileSize + " Byte.\n"
-							+ String.format("FILE COMPRESSION RATIO: %.2f%%\n", compressionRatio * 100));
-				}
-			} else {
-				resultArea.setText("Error: Please select a file first using the Browse button.");
+			if (lastResult == null) {
+				resultArea.setText("Error: Please compress or decompress a file first.");
+				return;
+			}
+			resultArea.setText((lastOperation == OperationType.COMPRESSOR ? "COMPRESSED: " : "DECOMPRESSED: ")
+					+ lastResult.getInput() + "\nFILE SIZE BEFORE COMPRESSION: " + lastResult.getOriginalSize()
+					+ " Byte.\nFILE SIZE AFTER COMPRESSION: " + lastResult.getCompressedSize() + " Byte.\n"
+					+ String.format("FILE COMPRESSION RATIO: %.2f%%\n", lastResult.getCompressionRatio() * 100));
+			HuffmanTable huffmanTable = lastResult.getHuffmanTable();
+			if (lastOperation == OperationType.COMPRESSOR && huffmanTable != null) {
+				resultArea.appendText(String.format("LONGEST CODE: %d Bits.\nCODE LENGTH LIMIT LOSS: %.4f%%\n",
+						huffmanTable.getMaxLength(), huffmanTable.getLengthLimitLoss() * 100));
+			}
+			if (lastResult.getMetrics() != null) {
+				resultArea.appendText("\n" + lastResult.getMetrics());
 			}
 		});
 
@@ -126,7 +167,7 @@ public class HuffmanGUI extends Application {
 		VBox buttonLayout = new VBox(30);
 		buttonLayout.setPadding(new Insets(30));
 		buttonLayout.setStyle("-fx-background-color: #D6EEEC; -fx-alignment: center;");
-		buttonLayout.getChildren().addAll(topRow, startButton, bottomRow);
+		buttonLayout.getChildren().addAll(topRow, startButton, bottomRow, progressBar, statusLabel, cancelButton);
 
 		HBox mainLayout = new HBox(20);
 		mainLayout.setPadding(new Insets(20));
@@ -191,28 +232,21 @@ public class HuffmanGUI extends Application {
 		if (compressedFilePath == null)
 			return;
 
-		fileSize = getFileSize(inputFilePath);
-
-		try (DataInputStream dis = new DataInputStream(new FileInputStream(compressedFilePath))) {
-			String fileExtension = dis.readUTF();
-			int headerSize = dis.readInt();
-			BinaryTree huffmanTree = (BinaryTree) new ObjectInputStream(dis).readObject();
-
-			byte[] compressedData = new byte[(int) (new File(compressedFilePath).length() - headerSize)];
-			dis.readFully(compressedData);
+		CodecTask task = new CodecTask(codec, OperationType.DECOMPRESSOR, Path.of(compressedFilePath));
+		task.setOnSucceeded(event -> {
+			CodecResult result = task.getValue();
+			lastResult = result;
+			lastOperation = OperationType.DECOMPRESSOR;
 
-			String decompressedFile = new File(compressedFilePath).getParent() + "/"
-					+ getFileNameWithoutExtension(new File(compressedFilePath).getName()) + "_decompressed."
-					+ fileExtension;
-
-			FileDecompressor.decompress(compressedData, huffmanTree, decompressedFile);
-
-			resultArea.setText("Decompression completed successfully!\n");
-			resultArea.appendText("Decompressed file: " + decompressedFile + "\n");
-
-		} catch (IOException | ClassNotFoundException e) {
-			resultArea.setText("Error during decompression: " + e.getMessage());
-		}
+			resultArea.appendText("Decompression completed successfully!\n");
+			resultArea.appendText("Decompressed file: " + result.getOutput() + "\n");
+			finishTask(task);
+		});
+		task.setOnFailed(event -> {
+			resultArea.appendText("Error during decompression: " + task.getException().getMessage() + "\n");
+			finishTask(task);
+		});
+		submitTask(task);
 	}
 
 	private void handleCompression(String inputFilePath, Stage primaryStage) {
@@ -221,64 +255,59 @@ public class HuffmanGUI extends Application {
 			return;
 		}
 
-		compressedFilePath = new File(inputFilePath).getParent() + "/"
-				+ getFileNameWithoutExtension(new File(inputFilePath).getName()) + ".huff";
-		fileSize = getFileSize(inputFilePath);
-
-		try {
-			int[] frequencyTable = new int[256];
-			try (BufferedReader reader = new BufferedReader(new FileReader(inputFilePath))) {
-				int ch;
-				while ((ch = reader.read()) != -1) {
-					if (ch >= 0 && ch < 256) {
-						frequencyTable[ch]++;
-					}
-				}
-			}
-
-			BinaryTree huffmanTree = FileCompressor.buildHuffmanTree(frequencyTable);
-			compressor.setHuffmanTree(huffmanTree);
-
-			byte[] compressedData = compressor.compress(inputFilePath, huffmanTree);
-
-			try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(compressedFilePath))) {
-				String fileExtension = getFileExtension(new File(inputFilePath));
-				dos.writeUTF(fileExtension);
-				dos.writeInt(compressedData.length);
-				dos.write(compressedData);
-			}
-
-			compressedFileSize = new File(compressedFilePath).length();
+		CodecTask task = new CodecTask(codec, OperationType.COMPRESSOR, Path.of(inputFilePath));
+		task.setOnSucceeded(event -> {
+			CodecResult result = task.getValue();
+			compressedFilePath = result.getOutput().toString();
+			huffmanTree = result.getHuffmanTree();
+			lastResult = result;
+			lastOperation = OperationType.COMPRESSOR;
 
 			resultArea.appendText("Compression completed successfully!\n");
 			resultArea.appendText("Compressed File: " + compressedFilePath + "\n");
-
-		} catch (Exception e) {
-			resultArea.setText("Error during file operations: " + e.getMessage());
-		}
+			finishTask(task);
+		});
+		task.setOnFailed(event -> {
+			resultArea.appendText("Error during file operations: " + task.getException().getMessage() + "\n");
+			finishTask(task);
+		});
+		submitTask(task);
 	}
 
-	private String getFileNameWithoutExtension(String fileName) {
-		int lastIndex = fileName.lastIndexOf(".");
-		if (lastIndex == -1) {
-			return fileName;
-		} else {
-			return fileName.substring(0, lastIndex);
-		}
-	}
+	/**
+	 * The submitTask method puts a job in the worker's queue and returns at once,
+	 * so more files can be queued while one is still being worked on. When the
+	 * job starts, the progress bar and the status label are bound to it and the
+	 * Cancel button is shown; all handlers run on the JavaFX application thread.
+	 **/
+	private void submitTask(CodecTask task) {
+		task.setOnRunning(event -> {
+			runningTask = task;
+			waitingTasks--;
+			progressBar.progressProperty().bind(task.progressProperty());
+			statusLabel.textProperty().bind(task.messageProperty());
+			progressBar.setVisible(true);
+			cancelButton.setVisible(true);
+		});
+		task.setOnCancelled(event -> {
+			resultArea.appendText("Cancelled: " + task.getInput() + "\n");
+			finishTask(task);
+		});
 
-	private String getFileExtension(File file) {
-		String fileName = file.getName();
-		int lastIndex = fileName.lastIndexOf(".");
-		if (lastIndex == -1) {
-			return "";
-		} else {
-			return fileName.substring(lastIndex + 1);
-		}
+		waitingTasks++;
+		resultArea.appendText("Queued: " + task.getInput() + (runningTask != null || waitingTasks > 1
+				? " (" + waitingTasks + " waiting)" : "") + "\n");
+		worker.execute(task);
 	}
 
-	private long getFileSize(String filePath) {
-		return new File(filePath).length();
+	// Unbind the finished job and hide the progress controls once nothing is running
+	private void finishTask(CodecTask task) {
+		runningTask = null;
+		progressBar.progressProperty().unbind();
+		statusLabel.textProperty().unbind();
+		statusLabel.setText(waitingTasks > 0 ? waitingTasks + " file(s) waiting" : "");
+		progressBar.setVisible(false);
+		cancelButton.setVisible(false);
 	}
 
 	private void showCompressButtons(Button browseButton, Button statisticButton, Button huffmanButton,
@@ -294,7 +323,7 @@ public class HuffmanGUI extends Application {
 			Button headerButton) {
 		operation = OperationType.DECOMPRESSOR;
 		browseButton.setVisible(true);
-		statisticButton.setVisible(false);
+		statisticButton.setVisible(true);
 		huffmanButton.setVisible(false);
 		headerButton.setVisible(false);
 	}
@@ -0,0 +1,212 @@
+package application;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class HuffmanHeader {
+
+	public static final int MAGIC = 0x48554646; // "HUFF"
+	public static final int VERSION = 4;
+
+	// Set when one code table in the header is used by every block
+	public static final int FLAG_SHARED_TABLE = 1;
+	// Set when the shared table is a dictionary that is named instead of stored
+	public static final int FLAG_DICTIONARY = 2;
+	// Set when every block payload is split into four interleaved bitstreams
+	public static final int FLAG_INTERLEAVED = 4;
+	// Set when the block index is followed by checkpoints for reading ranges
+	public static final int FLAG_SEEK_INDEX = 8;
+
+	// Block types, stored in every frame
+	public static final int BLOCK_HUFFMAN = 0;
+	public static final int BLOCK_RAW = 1;
+	public static final int BLOCK_RUN = 2;
+
+	private final String extension;
+	private final long originalLength;
+	private final int blockSize;
+	private final HuffmanTable table;
+	private final HuffmanDictionary dictionary;
+	private boolean interleaved;
+	private boolean seekIndex;
+
+	// A null table means every block carries its own code lengths
+	public HuffmanHeader(String extension, long originalLength, int blockSize, HuffmanTable table) {
+		this.extension = extension;
+		this.originalLength = originalLength;
+		this.blockSize = blockSize;
+		this.table = table;
+		this.dictionary = null;
+	}
+
+	public HuffmanHeader(String extension, long originalLength, int blockSize, HuffmanDictionary dictionary) {
+		this.extension = extension;
+		this.originalLength = originalLength;
+		this.blockSize = blockSize;
+		this.table = dictionary.getTable();
+		this.dictionary = dictionary;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public long getOriginalLength() {
+		return originalLength;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public boolean isSharedTable() {
+		return table != null;
+	}
+
+	public HuffmanTable getTable() {
+		return table;
+	}
+
+	public HuffmanDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public boolean isInterleaved() {
+		return interleaved;
+	}
+
+	public void setInterleaved(boolean interleaved) {
+		this.interleaved = interleaved;
+	}
+
+	public boolean hasSeekIndex() {
+		return seekIndex;
+	}
+
+	public void setSeekIndex(boolean seekIndex) {
+		this.seekIndex = seekIndex;
+	}
+
+	public long getBlockCount() {
+		return (originalLength + blockSize - 1) / blockSize;
+	}
+
+	/**
+	 * The write method stores the header at the start of a .huff file. It holds
+	 * the magic number and format version, a set of flags, the length of the
+	 * original file, its extension and the size of the blocks the file was split
+	 * into. When all blocks share one code table, the code length of every byte
+	 * follows. Code lengths never exceed 15, so two of them are packed into each
+	 * byte, and only the lengths up to the highest byte value that actually
+	 * occurs are written. The header is therefore at most 128 bytes of code
+	 * lengths plus a few fixed fields. When the table comes from a dictionary,
+	 * only the dictionary's id and checksum are written instead of the lengths.
+	 **/
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte((isSharedTable() ? FLAG_SHARED_TABLE : 0) | (dictionary != null ? FLAG_DICTIONARY : 0)
+				| (interleaved ? FLAG_INTERLEAVED : 0) | (seekIndex ? FLAG_SEEK_INDEX : 0));
+		out.writeLong(originalLength);
+		out.writeUTF(extension);
+		out.writeInt(blockSize);
+		if (dictionary != null) {
+			out.writeInt(dictionary.getId());
+			out.writeInt(dictionary.getChecksum());
+		} else if (isSharedTable()) {
+			writeLengths(out, table);
+		}
+	}
+
+	public static HuffmanHeader read(DataInput in) throws IOException {
+		return read(in, null);
+	}
+
+	// The dictionary is only needed for files that were compressed with one
+	public static HuffmanHeader read(DataInput in, HuffmanDictionary dictionary) throws IOException {
+		int magic = in.readInt();
+		if (magic != MAGIC) {
+			throw new IOException("Not a .huff file.");
+		}
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported .huff version: " + version + ".");
+		}
+		int flags = in.readUnsignedByte();
+		long originalLength = in.readLong();
+		if (originalLength < 0) {
+			throw new IOException("Corrupt header: negative original length.");
+		}
+		String extension = in.readUTF();
+		int blockSize = in.readInt();
+		if (blockSize <= 0) {
+			throw new IOException("Corrupt header: block size " + blockSize + ".");
+		}
+		HuffmanHeader header;
+		if ((flags & FLAG_DICTIONARY) != 0) {
+			int id = in.readInt();
+			int checksum = in.readInt();
+			if (dictionary == null) {
+				throw new IOException("File was compressed with dictionary " + id + "; it is needed to decompress.");
+			}
+			if (!dictionary.matches(id, checksum)) {
+				throw new IOException("File was compressed with dictionary " + id + ", not with dictionary "
+						+ dictionary.getId() + " or a different version of it.");
+			}
+			header = new HuffmanHeader(extension, originalLength, blockSize, dictionary);
+		} else {
+			HuffmanTable table = (flags & FLAG_SHARED_TABLE) != 0 ? readLengths(in) : null;
+			header = new HuffmanHeader(extension, originalLength, blockSize, table);
+		}
+		header.setInterleaved((flags & FLAG_INTERLEAVED) != 0);
+		header.setSeekIndex((flags & FLAG_SEEK_INDEX) != 0);
+		return header;
+	}
+
+	static void writeLengths(DataOutput out, HuffmanTable table) throws IOException {
+		out.write(packLengths(table));
+	}
+
+	// The symbol count as a short followed by two code lengths per byte, as writeLengths writes them
+	static byte[] packLengths(HuffmanTable table) {
+		int symbolCount = 0;
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			if (table.getLength(symbol) > 0) {
+				symbolCount = symbol + 1;
+			}
+		}
+
+		byte[] packed = new byte[2 + (symbolCount + 1) / 2];
+		packed[0] = (byte) (symbolCount >>> 8);
+		packed[1] = (byte) symbolCount;
+		for (int symbol = 0; symbol < symbolCount; symbol += 2) {
+			int high = table.getLength(symbol);
+			int low = symbol + 1 < symbolCount ? table.getLength(symbol + 1) : 0;
+			packed[2 + symbol / 2] = (byte) ((high << 4) | low);
+		}
+		return packed;
+	}
+
+	static HuffmanTable readLengths(DataInput in) throws IOException {
+		int symbolCount = in.readUnsignedShort();
+		if (symbolCount > HuffmanTable.SYMBOLS) {
+			throw new IOException("Corrupt header: " + symbolCount + " code lengths.");
+		}
+
+		int[] lengths = new int[HuffmanTable.SYMBOLS];
+		for (int symbol = 0; symbol < symbolCount; symbol += 2) {
+			int packed = in.readUnsignedByte();
+			lengths[symbol] = packed >>> 4;
+			if (symbol + 1 < symbolCount) {
+				lengths[symbol + 1] = packed & 0x0F;
+			}
+		}
+
+		try {
+			return HuffmanTable.fromLengths(lengths);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt header: " + e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package application;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * A HuffmanInputStream reads a stream written by HuffmanOutputStream or
+ * HuffmanStream.compress and hands out the original bytes, much like an
+ * InflaterInputStream does for deflate. It decodes one frame at a time into a
+ * chunk buffer and serves reads from it, so memory stays at one chunk and one
+ * payload buffer, both reused for every frame.
+ *
+ * The header is read with the first frame. The stream ends at the end frame
+ * and reads nothing past it, so more data may follow in the underlying
+ * stream. If the underlying stream ends before the end frame, an EOFException
+ * is thrown rather than passing off a cut-off stream as complete.
+ **/
+public class HuffmanInputStream extends FilterInputStream {
+
+	private final DataInputStream data;
+	private final byte[] chunk = new byte[HuffmanStream.CHUNK_SIZE];
+	private byte[] payload = new byte[0];
+	private AdaptiveModel model;
+	private int position;
+	private int limit;
+	private long bytesRead;
+	private boolean ended;
+	private boolean closed;
+
+	public HuffmanInputStream(InputStream in) {
+		super(Objects.requireNonNull(in));
+		this.data = new DataInputStream(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		ensureOpen();
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		return chunk[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		Objects.checkFromIndexSize(off, len, b.length);
+		if (len == 0) {
+			return 0;
+		}
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		int count = Math.min(len, limit - position);
+		System.arraycopy(chunk, position, b, off, count);
+		position += count;
+		return count;
+	}
+
+	// Skipped bytes still have to be decoded, since later frames depend on them
+	@Override
+	public long skip(long n) throws IOException {
+		ensureOpen();
+		long skipped = 0;
+		while (skipped < n && (position < limit || fill())) {
+			int count = (int) Math.min(n - skipped, limit - position);
+			position += count;
+			skipped += count;
+		}
+		return skipped;
+	}
+
+	// Decoded bytes that can be read without touching the underlying stream
+	@Override
+	public int available() throws IOException {
+		ensureOpen();
+		return limit - position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			in.close();
+		}
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+
+	// Original bytes decoded so far
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * The fill method decodes the next frame into the chunk buffer with the
+	 * model's current table and then counts it into the model, which therefore
+	 * rebuilds its table at exactly the same points as it did in the encoder.
+	 * It returns false once the end frame has been read.
+	 **/
+	private boolean fill() throws IOException {
+		ensureOpen();
+		if (ended) {
+			return false;
+		}
+		try {
+			if (model == null) {
+				model = readHeader();
+			}
+			int count = data.readInt();
+			if (count == 0) {
+				ended = true;
+				return false;
+			}
+			int payloadSize = data.readInt();
+			// Checked before anything is allocated, so a damaged size cannot ask for gigabytes
+			if (count < 0 || count > Math.min(chunk.length, model.remaining()) || payloadSize < 0
+					|| payloadSize > (count * HuffmanTable.MAX_CODE_LENGTH + 7) / 8) {
+				throw new IOException("Corrupt frame: " + count + " bytes in " + payloadSize + ".");
+			}
+			if (payload.length < payloadSize) {
+				payload = new byte[payloadSize];
+			}
+			data.readFully(payload, 0, payloadSize);
+			FileDecompressor.decodeBlock(model.decoder(), payload, 0, payloadSize, chunk, count, false);
+			model.update(chunk, 0, count);
+			position = 0;
+			limit = count;
+			bytesRead += count;
+			return true;
+		} catch (EOFException e) {
+			throw new EOFException("Stream ended after " + bytesRead + " bytes without its end frame.");
+		}
+	}
+
+	private AdaptiveModel readHeader() throws IOException {
+		if (data.readInt() != HuffmanStream.MAGIC) {
+			throw new IOException("Not a Huffman stream.");
+		}
+		int version = data.readUnsignedByte();
+		if (version != HuffmanStream.VERSION) {
+			throw new IOException("Unsupported Huffman stream version: " + version + ".");
+		}
+		int updateInterval = data.readInt();
+		int maxCodeLength = data.readUnsignedByte();
+		if (updateInterval <= 0 || updateInterval > HuffmanStream.MAX_UPDATE_INTERVAL || maxCodeLength < 8
+				|| maxCodeLength > HuffmanTable.MAX_CODE_LENGTH) {
+			throw new IOException("Corrupt stream header.");
+		}
+		return new AdaptiveModel(updateInterval, maxCodeLength);
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+}
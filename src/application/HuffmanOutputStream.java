@@ -0,0 +1,171 @@
+package application;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A HuffmanOutputStream compresses everything written to it into the
+ * underlying stream, in the one-pass format of HuffmanStream, much like a
+ * DeflaterOutputStream does with deflate. It can sit anywhere an OutputStream
+ * is expected, such as in front of a socket, an ObjectOutputStream or a log
+ * writer, so data never has to go through a temporary file to be compressed.
+ *
+ * Written bytes are collected in a chunk buffer and coded as one frame when
+ * the chunk is full or the adaptive model is due to rebuild its table. The
+ * frame is built in a second buffer together with its sizes and handed to the
+ * underlying stream in one write. Both buffers are allocated once and reused
+ * for every frame. Calling flush codes the bytes collected so far as a short
+ * frame, so a reader on the other side gets them without waiting for a full
+ * chunk. The header is written with the first frame.
+ *
+ * The end frame is written by finish, which leaves the underlying stream open
+ * for whatever comes next, or by close, which closes it too.
+ **/
+public class HuffmanOutputStream extends FilterOutputStream {
+
+	private final int updateInterval;
+	private final int maxCodeLength;
+	private final AdaptiveModel model;
+	private final byte[] chunk = new byte[HuffmanStream.CHUNK_SIZE];
+	private final ByteBuffer frame;
+	private int count;
+	private long bytesWritten;
+	private boolean headerWritten;
+	private boolean finished;
+	private boolean closed;
+
+	public HuffmanOutputStream(OutputStream out) {
+		this(out, HuffmanStream.DEFAULT_UPDATE_INTERVAL, HuffmanTable.MAX_CODE_LENGTH);
+	}
+
+	public HuffmanOutputStream(OutputStream out, int updateInterval, int maxCodeLength) {
+		super(Objects.requireNonNull(out));
+		if (updateInterval <= 0 || updateInterval > HuffmanStream.MAX_UPDATE_INTERVAL) {
+			throw new IllegalArgumentException("Update interval must be between 1 and "
+					+ HuffmanStream.MAX_UPDATE_INTERVAL + ": " + updateInterval);
+		}
+		if (maxCodeLength < 8 || maxCodeLength > HuffmanTable.MAX_CODE_LENGTH) {
+			throw new IllegalArgumentException(
+					"Maximum code length must be between 8 and " + HuffmanTable.MAX_CODE_LENGTH + ": " + maxCodeLength);
+		}
+		this.updateInterval = updateInterval;
+		this.maxCodeLength = maxCodeLength;
+		this.model = new AdaptiveModel(updateInterval, maxCodeLength);
+		// Frame sizes, the longest possible payload and the BitWriter's 8 bytes of slack
+		this.frame = ByteBuffer.allocate(8 + (chunk.length * maxCodeLength + 7) / 8 + 8);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		chunk[count++] = (byte) b;
+		if (count == frameLimit()) {
+			writeFrame();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		Objects.checkFromIndexSize(off, len, b.length);
+		ensureOpen();
+		while (len > 0) {
+			int length = Math.min(len, frameLimit() - count);
+			System.arraycopy(b, off, chunk, count, length);
+			count += length;
+			off += length;
+			len -= length;
+			if (count == frameLimit()) {
+				writeFrame();
+			}
+		}
+	}
+
+	// Code the bytes collected so far, then flush the underlying stream
+	@Override
+	public void flush() throws IOException {
+		if (!finished && count > 0) {
+			writeFrame();
+		}
+		out.flush();
+	}
+
+	// Write the remaining bytes and the end frame without closing the underlying stream
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		if (count > 0) {
+			writeFrame();
+		}
+		writeHeader();
+		frame.clear().putInt(0);
+		out.write(frame.array(), 0, 4);
+		bytesWritten += 4;
+		finished = true;
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	// Compressed bytes handed to the underlying stream so far, header included
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	// A frame never crosses a rebuild of the model's table
+	private int frameLimit() {
+		return Math.min(chunk.length, model.remaining());
+	}
+
+	/**
+	 * The writeFrame method codes the collected chunk with the model's current
+	 * table straight into the frame buffer, after the room left for the
+	 * original and payload sizes, fills in the sizes and writes the whole frame
+	 * at once. Only then is the chunk counted into the model, in the same order
+	 * as the HuffmanInputStream on the other side will count it.
+	 **/
+	private void writeFrame() throws IOException {
+		writeHeader();
+		frame.clear().position(8);
+		BitWriter writer = new BitWriter(frame);
+		FileCompressor.encode(chunk, 0, count, model.table(), writer);
+		writer.flush();
+		int frameSize = frame.position();
+		frame.putInt(0, count).putInt(4, frameSize - 8);
+		out.write(frame.array(), 0, frameSize);
+		bytesWritten += frameSize;
+		model.update(chunk, 0, count);
+		count = 0;
+	}
+
+	private void writeHeader() throws IOException {
+		if (headerWritten) {
+			return;
+		}
+		frame.clear().putInt(HuffmanStream.MAGIC).put((byte) HuffmanStream.VERSION).putInt(updateInterval)
+				.put((byte) maxCodeLength);
+		out.write(frame.array(), 0, frame.position());
+		bytesWritten += frame.position();
+		headerWritten = true;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (finished) {
+			throw new IOException("Huffman stream already finished.");
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package application;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * HuffmanStream compresses data whose length is not known in advance, such as
+ * standard input, a socket or a growing log, in a single pass. Instead of
+ * counting the input first, the encoder and the decoder share an
+ * AdaptiveModel that rebuilds the code table from the data already seen, so
+ * the stream carries no code tables at all.
+ *
+ * A stream is a small header (magic number, version, update interval and
+ * maximum code length) followed by frames. Each frame holds the original size
+ * of one chunk, the size of its payload and the encoded bits. A frame with an
+ * original size of 0 ends the stream.
+ **/
+public class HuffmanStream {
+
+	public static final int MAGIC = 0x48554653; // "HUFS"
+	public static final int VERSION = 1;
+	public static final int DEFAULT_UPDATE_INTERVAL = 64 * 1024;
+	// Keeps the model's frequencies and their sum within an int
+	public static final int MAX_UPDATE_INTERVAL = 256 * 1024 * 1024;
+
+	// Largest original size of a frame
+	static final int CHUNK_SIZE = 64 * 1024;
+
+	public static long compress(InputStream inputStream, OutputStream outputStream) throws IOException {
+		return compress(inputStream, outputStream, DEFAULT_UPDATE_INTERVAL, HuffmanTable.MAX_CODE_LENGTH);
+	}
+
+	/**
+	 * The compress method reads the input once, in chunks of whatever size the
+	 * stream hands out, and writes it through a HuffmanOutputStream, which
+	 * codes it into frames with the model's current table. The output is
+	 * flushed whenever no more input is immediately available, so a slow
+	 * producer's data reaches the reader without waiting for a full chunk. The
+	 * input is read until it ends; the output is flushed but not closed, and
+	 * the number of bytes written is returned.
+	 **/
+	public static long compress(InputStream inputStream, OutputStream outputStream, int updateInterval,
+			int maxCodeLength) throws IOException {
+		HuffmanOutputStream huffman = new HuffmanOutputStream(outputStream, updateInterval, maxCodeLength);
+		byte[] buffer = new byte[CHUNK_SIZE];
+		int count;
+		while ((count = inputStream.read(buffer)) != -1) {
+			huffman.write(buffer, 0, count);
+			if (inputStream.available() == 0) {
+				huffman.flush();
+			}
+		}
+		huffman.finish();
+		return huffman.getBytesWritten();
+	}
+
+	/**
+	 * The decompress method reads the stream through a HuffmanInputStream,
+	 * which decodes frame after frame up to the end frame and throws an
+	 * EOFException if the stream ends before it. Like the encoder, it flushes
+	 * the output whenever no more input is waiting. The output is flushed but
+	 * not closed, and the number of restored bytes is returned.
+	 **/
+	public static long decompress(InputStream inputStream, OutputStream outputStream) throws IOException {
+		HuffmanInputStream huffman = new HuffmanInputStream(inputStream);
+		byte[] buffer = new byte[CHUNK_SIZE];
+		int count;
+		while ((count = huffman.read(buffer)) != -1) {
+			outputStream.write(buffer, 0, count);
+			if (huffman.available() == 0 && inputStream.available() == 0) {
+				outputStream.flush();
+			}
+		}
+		outputStream.flush();
+		return huffman.getBytesRead();
+	}
+
+	// True if the file starts like a stream written by compress rather than a .huff file
+	public static boolean isStream(Path file) throws IOException {
+		try (DataInputStream dis = new DataInputStream(Files.newInputStream(file))) {
+			return dis.readInt() == MAGIC;
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+}
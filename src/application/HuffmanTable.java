@@ -0,0 +1,288 @@
+package application;
+
+import java.util.Arrays;
+
+public class HuffmanTable {
+
+	public static final int SYMBOLS = 256;
+	public static final int MAX_CODE_LENGTH = 15;
+
+	private final long[] codes = new long[SYMBOLS];
+	private final int[] lengths = new int[SYMBOLS];
+	private double lengthLimitLoss;
+
+	/**
+	 * The fromTree method walks the Huffman tree once and records how deep every
+	 * leaf is, which is the length of that byte's code, and how often the byte
+	 * occurs. If any code is longer than maxLength, the lengths are replaced by
+	 * the optimal lengths under that limit, computed by packageMerge, and the
+	 * share of extra output bits this costs is kept as the length limit loss.
+	 * The lengths are then turned into canonical codes by fromLengths. The
+	 * Huffman code strings stored in the tree are filled in with the canonical
+	 * codes so that the displayed tree matches what is written.
+	 **/
+	public static HuffmanTable fromTree(BinaryTree tree) {
+		return fromTree(tree, MAX_CODE_LENGTH);
+	}
+
+	public static HuffmanTable fromTree(BinaryTree tree, int maxLength) {
+		if (maxLength < 1 || maxLength > MAX_CODE_LENGTH) {
+			throw new IllegalArgumentException("Maximum code length must be between 1 and " + MAX_CODE_LENGTH
+					+ ": " + maxLength);
+		}
+
+		int[] depths = new int[SYMBOLS];
+		long[] frequencies = new long[SYMBOLS];
+		collectLeaves(tree, 0, depths, frequencies);
+
+		int[] lengths = depths;
+		double loss = 0;
+		if (Arrays.stream(depths).max().getAsInt() > maxLength) {
+			lengths = packageMerge(frequencies, maxLength);
+			loss = (double) encodedBits(lengths, frequencies) / encodedBits(depths, frequencies) - 1;
+		}
+
+		HuffmanTable table = fromLengths(lengths);
+		table.lengthLimitLoss = loss;
+		table.assignHuffCodes(tree);
+		return table;
+	}
+
+	public static HuffmanTable fromFrequencies(int[] frequencyTable) {
+		return fromFrequencies(frequencyTable, MAX_CODE_LENGTH);
+	}
+
+	public static HuffmanTable fromFrequencies(int[] frequencyTable, int maxLength) {
+		return fromTree(FileCompressor.buildHuffmanTree(frequencyTable), maxLength);
+	}
+
+	public static HuffmanTable fromFrequencies(long[] frequencyTable) {
+		return fromFrequencies(frequencyTable, MAX_CODE_LENGTH);
+	}
+
+	public static HuffmanTable fromFrequencies(long[] frequencyTable, int maxLength) {
+		return fromTree(FileCompressor.buildHuffmanTree(frequencyTable), maxLength);
+	}
+
+	private static void collectLeaves(BinaryTree tree, int depth, int[] depths, long[] frequencies) {
+		if (tree == null)
+			return;
+
+		if (tree.left == null && tree.right == null) {
+			// A tree with a single leaf still needs one bit per byte
+			depths[tree.ch & 0xFF] = Math.max(depth, 1);
+			frequencies[tree.ch & 0xFF] = tree.getFrequency();
+			return;
+		}
+
+		collectLeaves(tree.left, depth + 1, depths, frequencies);
+		collectLeaves(tree.right, depth + 1, depths, frequencies);
+	}
+
+	// Number of bits the data takes when every byte is coded with the given lengths
+	static long encodedBits(int[] lengths, long[] frequencies) {
+		long bits = 0;
+		for (int symbol = 0; symbol < lengths.length; symbol++) {
+			bits += lengths[symbol] * frequencies[symbol];
+		}
+		return bits;
+	}
+
+	/**
+	 * The packageMerge method computes optimal code lengths that are no longer
+	 * than maxLength (the package-merge algorithm of Larmore and Hirschberg). It
+	 * starts with the used bytes sorted by frequency, one list per allowed code
+	 * length. Going from the deepest level up, neighbouring items of the previous
+	 * list are paired into packages whose weight is the sum of both, and the
+	 * packages are merged with the bytes into the next list by weight. The
+	 * cheapest 2n - 2 items of the last list are then taken. Every time a byte is
+	 * taken, directly or inside a package, its code gets one bit longer.
+	 *
+	 * Instead of storing the content of every package, only whether each list
+	 * item is a byte or a package is remembered. The taken items are always the
+	 * first ones of a list, and the packages among them are made of the first
+	 * items of the list below, so the lengths can be counted level by level.
+	 **/
+	static int[] packageMerge(long[] frequencies, int maxLength) {
+		int[] lengths = new int[frequencies.length];
+		int[] symbols = new int[frequencies.length];
+		int n = 0;
+		for (int symbol = 0; symbol < frequencies.length; symbol++) {
+			if (frequencies[symbol] > 0) {
+				symbols[n++] = symbol;
+			}
+		}
+		if (n == 0) {
+			return lengths;
+		}
+		if (n == 1) {
+			lengths[symbols[0]] = 1;
+			return lengths;
+		}
+		if (n > 1L << maxLength) {
+			throw new IllegalArgumentException("Too many symbols for a maximum code length of " + maxLength + ".");
+		}
+
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = symbols[i];
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(frequencies[a], frequencies[b]));
+		long[] leafWeights = new long[n];
+		for (int i = 0; i < n; i++) {
+			leafWeights[i] = frequencies[order[i]];
+		}
+
+		// isLeaf[level][i] tells whether item i of the list for that level is a byte
+		boolean[][] isLeaf = new boolean[maxLength + 1][];
+		long[] previous = leafWeights;
+		isLeaf[maxLength] = new boolean[n];
+		Arrays.fill(isLeaf[maxLength], true);
+
+		for (int level = maxLength - 1; level >= 1; level--) {
+			int packages = previous.length / 2;
+			long[] current = new long[n + packages];
+			boolean[] kinds = new boolean[n + packages];
+			int leaf = 0;
+			int pack = 0;
+			for (int i = 0; i < current.length; i++) {
+				long packageWeight = pack < packages ? previous[2 * pack] + previous[2 * pack + 1] : Long.MAX_VALUE;
+				if (leaf < n && leafWeights[leaf] <= packageWeight) {
+					current[i] = leafWeights[leaf++];
+					kinds[i] = true;
+				} else {
+					current[i] = packageWeight;
+					pack++;
+				}
+			}
+			isLeaf[level] = kinds;
+			previous = current;
+		}
+
+		int taken = 2 * n - 2;
+		for (int level = 1; level <= maxLength && taken > 0; level++) {
+			int leaf = 0;
+			int packages = 0;
+			for (int i = 0; i < taken; i++) {
+				if (isLeaf[level][i]) {
+					lengths[order[leaf++]]++;
+				} else {
+					packages++;
+				}
+			}
+			taken = 2 * packages;
+		}
+		return lengths;
+	}
+
+	/**
+	 * The fromLengths method builds canonical Huffman codes from nothing but the
+	 * code length of every byte. Codes are handed out in order of length and,
+	 * within the same length, in order of byte value, each one being the
+	 * previous code plus one. Because of this, the decompressor can rebuild the
+	 * exact same codes from the lengths stored in the header, and the tree itself
+	 * never has to be written to the file.
+	 **/
+	public static HuffmanTable fromLengths(int[] lengths) {
+		if (lengths.length != SYMBOLS) {
+			throw new IllegalArgumentException("Expected " + SYMBOLS + " code lengths, got " + lengths.length + ".");
+		}
+
+		HuffmanTable table = new HuffmanTable();
+		System.arraycopy(lengths, 0, table.lengths, 0, SYMBOLS);
+		canonicalCodes(table.lengths, table.codes, new long[MAX_CODE_LENGTH + 1]);
+		return table;
+	}
+
+	/**
+	 * The canonicalCodes method does the work of fromLengths on arrays owned by
+	 * the caller, with nextCode (MAX_CODE_LENGTH + 1 entries) as scratch space,
+	 * so a HuffmanContext can rebuild its codes without allocating anything. It
+	 * first counts how many codes have each length, then turns the counts into
+	 * the first code of each length and hands out the codes in byte order.
+	 **/
+	static void canonicalCodes(int[] lengths, long[] codes, long[] nextCode) {
+		Arrays.fill(nextCode, 0);
+		long kraft = 0;
+		for (int length : lengths) {
+			if (length < 0 || length > MAX_CODE_LENGTH) {
+				throw new IllegalArgumentException("Invalid code length: " + length + ".");
+			}
+			if (length > 0) {
+				nextCode[length]++;
+				kraft += 1L << (MAX_CODE_LENGTH - length);
+			}
+		}
+		if (kraft > 1L << MAX_CODE_LENGTH) {
+			throw new IllegalArgumentException("Code lengths do not form a prefix code.");
+		}
+
+		long code = 0;
+		long previousCount = 0;
+		for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+			long count = nextCode[length];
+			code = (code + previousCount) << 1;
+			nextCode[length] = code;
+			previousCount = count;
+		}
+
+		for (int symbol = 0; symbol < lengths.length; symbol++) {
+			int length = lengths[symbol];
+			codes[symbol] = length > 0 ? nextCode[length]++ : 0;
+		}
+	}
+
+	private void assignHuffCodes(BinaryTree tree) {
+		if (tree == null)
+			return;
+
+		if (tree.left == null && tree.right == null) {
+			tree.huffCode = codeString(tree.ch & 0xFF);
+			return;
+		}
+
+		assignHuffCodes(tree.left);
+		assignHuffCodes(tree.right);
+	}
+
+	public String codeString(int symbol) {
+		StringBuilder code = new StringBuilder(lengths[symbol]);
+		for (int bit = lengths[symbol] - 1; bit >= 0; bit--) {
+			code.append((codes[symbol] >>> bit) & 1);
+		}
+		return code.toString();
+	}
+
+	public boolean contains(int symbol) {
+		return lengths[symbol] > 0;
+	}
+
+	// Extra output size caused by the code length limit, 0.01 meaning 1% bigger
+	public double getLengthLimitLoss() {
+		return lengthLimitLoss;
+	}
+
+	public int getMaxLength() {
+		int maxLength = 0;
+		for (int length : lengths) {
+			maxLength = Math.max(maxLength, length);
+		}
+		return maxLength;
+	}
+
+	public long getCode(int symbol) {
+		return codes[symbol];
+	}
+
+	public int getLength(int symbol) {
+		return lengths[symbol];
+	}
+
+	long[] codes() {
+		return codes;
+	}
+
+	int[] lengths() {
+		return lengths;
+	}
+}
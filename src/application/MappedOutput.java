@@ -0,0 +1,64 @@
+package application;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A MappedOutput is an output file whose final size is known in advance. It
+ * is memory-mapped as one MemorySegment, so a restored block is copied
+ * straight into the page cache with no write call and no temporary buffer in
+ * between, and several threads can fill different blocks at the same time.
+ * Unlike a MappedByteBuffer, a segment is indexed with longs, so even files
+ * far above 2 GB need only one mapping.
+ *
+ * The segment belongs to a shared Arena that close releases, which unmaps the
+ * file right away instead of whenever the garbage collector gets to it. If
+ * the file cannot be mapped at all, every block is written with a positional
+ * FileChannel write instead.
+ **/
+class MappedOutput implements Closeable {
+
+	private final FileChannel channel;
+	private final Arena arena;
+	private final MemorySegment segment;
+
+	// Map size bytes of channel, which must be open for reading and writing; this makes the file that big
+	MappedOutput(FileChannel channel, long size) {
+		this.channel = channel;
+		Arena arena = Arena.ofShared();
+		MemorySegment segment = null;
+		try {
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+		} catch (IOException | UnsupportedOperationException e) {
+			// Devices and some file systems cannot be mapped; every write becomes a positional write
+			arena.close();
+			arena = null;
+		}
+		this.arena = arena;
+		this.segment = segment;
+	}
+
+	void write(long position, byte[] data, int offset, int length) throws IOException {
+		if (segment != null) {
+			MemorySegment.copy(data, offset, segment, ValueLayout.JAVA_BYTE, position, length);
+			return;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position() - offset);
+		}
+	}
+
+	// Unmap the file; every write has to be done by now
+	@Override
+	public void close() {
+		if (arena != null) {
+			arena.close();
+		}
+	}
+}
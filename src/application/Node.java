@@ -2,12 +2,12 @@ package application;
 
 public class Node implements Comparable<Node> {
 	
-	int freq;
+	long freq;
 	char ch;
 	Node left;
 	Node right;
 	
-	public Node(int freq, char ch) {
+	public Node(long freq, char ch) {
 		super();
 		this.freq = freq;
 		this.ch = ch;
@@ -19,11 +19,11 @@ public class Node implements Comparable<Node> {
 		super();
 	}
 
-	public int getFreq() {
+	public long getFreq() {
 		return freq;
 	}
 
-	public void setFreq(int freq) {
+	public void setFreq(long freq) {
 		this.freq = freq;
 	}
 
@@ -53,7 +53,7 @@ public class Node implements Comparable<Node> {
 
 	@Override
 	public int compareTo(Node o) {
-		return this.freq - o.freq;
+		return Long.compare(this.freq, o.freq);
 	}
 
 	@Override
@@ -0,0 +1,37 @@
+package application;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A PhaseEvent is the JDK Flight Recorder event for one timed phase of the
+ * codec, such as encoding one block. It is created and committed by
+ * CodecMetrics; only the phase name, the bytes handled and the bytes
+ * allocated are recorded, next to the start time, duration and thread that
+ * JFR adds to every event.
+ **/
+@Name("application.HuffmanPhase")
+@Label("Huffman Phase")
+@Category("Huffman")
+@Description("One timed phase of a Huffman compression or decompression")
+public class PhaseEvent extends jdk.jfr.Event {
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+
+	// Kept for CodecMetrics, not recorded
+	transient CodecMetrics.Phase kind;
+	transient long startNanos;
+	transient long startAllocated;
+}
@@ -0,0 +1,14 @@
+package application;
+
+/**
+ * A ProgressListener is told how far a compression or decompression has got.
+ * It is called after every block with the number of original bytes handled so
+ * far and the total number, on whichever thread finished the block, so it
+ * should be quick and must hand anything that touches a user interface over
+ * to that interface's own thread.
+ **/
+@FunctionalInterface
+public interface ProgressListener {
+
+	void progress(long bytesDone, long bytesTotal);
+}
@@ -1,5 +1,7 @@
 module AlgoPrj2 {
 	requires javafx.controls;
+	requires jdk.jfr;
+	requires jdk.management;
 	
 	opens application to javafx.graphics, javafx.fxml;
 	exports application;
@@ -0,0 +1,59 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BitWriterTest {
+
+	// Packs a string of '0' and '1' into bytes, most significant bit first, padding with zeros
+	static byte[] pack(CharSequence bits) {
+		byte[] bytes = new byte[(bits.length() + 7) / 8];
+		for (int i = 0; i < bits.length(); i++) {
+			if (bits.charAt(i) == '1') {
+				bytes[i / 8] |= (byte) (0x80 >>> (i % 8));
+			}
+		}
+		return bytes;
+	}
+
+	static String bits(long code, int length) {
+		StringBuilder bits = new StringBuilder(length);
+		for (int i = length - 1; i >= 0; i--) {
+			bits.append((code >>> i & 1) == 0 ? '0' : '1');
+		}
+		return bits.toString();
+	}
+
+	// Enough codes of every length from 1 to 56 bits to fill the internal buffer several times
+	@Test
+	void writesCodesOfEveryLengthMostSignificantBitFirst() throws IOException {
+		Random random = new Random(3);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitWriter writer = new BitWriter(out);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 50_000; i++) {
+			int length = 1 + random.nextInt(56);
+			long code = random.nextLong() >>> (64 - length);
+			writer.writeBits(code, length);
+			expected.append(bits(code, length));
+		}
+		writer.flush();
+		assertArrayEquals(pack(expected), out.toByteArray());
+	}
+
+	@Test
+	void flushPadsTheLastByteWithZeros() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitWriter writer = new BitWriter(out);
+		writer.writeBits(0b101, 3);
+		writer.flush();
+		writer.writeBits(0b1111_1111_1, 9);
+		writer.flush();
+		assertArrayEquals(new byte[] { (byte) 0b1010_0000, (byte) 0xFF, (byte) 0b1000_0000 }, out.toByteArray());
+	}
+}
@@ -0,0 +1,65 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class BlockPipelineTest {
+
+	// Blocks that take longer to process than the ones after them still come out in reading order
+	@Test
+	void writesResultsInReadingOrderWithBoundedBlocksInFlight() throws IOException {
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		List<Integer> written = new ArrayList<>();
+
+		BlockPipeline.run(() -> {
+			int block = next.getAndIncrement();
+			if (block == 500) {
+				return null;
+			}
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			return block;
+		}, block -> {
+			if (block % 7 == 0) {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return 2 * block;
+		}, result -> {
+			inFlight.decrementAndGet();
+			written.add(result);
+		}, 3, 4);
+
+		assertEquals(500, written.size());
+		for (int block = 0; block < written.size(); block++) {
+			assertEquals(2 * block, written.get(block));
+		}
+		assertTrue(maxInFlight.get() <= 4, maxInFlight.get() + " blocks in flight");
+	}
+
+	// The reader never runs out, so the pipeline only ends because the stage failed
+	@Test
+	void failingStageThrowsItsException() {
+		AtomicInteger next = new AtomicInteger();
+		IOException e = assertThrows(IOException.class, () -> BlockPipeline.run(() -> next.getAndIncrement(), block -> {
+			if (block == 50) {
+				throw new IOException("Corrupt block 50.");
+			}
+			return block;
+		}, result -> {
+		}, 2, 8));
+		assertEquals("Corrupt block 50.", e.getMessage());
+	}
+}
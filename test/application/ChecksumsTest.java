@@ -0,0 +1,67 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChecksumsTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void combineEqualsChecksumOfJoinedData() {
+		byte[] data = Samples.text(10_000);
+		int whole = Checksums.crc32c(data, 0, data.length);
+		for (int split : new int[] { 0, 1, 7, 4096, 9_999, 10_000 }) {
+			int first = Checksums.crc32c(data, 0, split);
+			int second = Checksums.crc32c(data, split, data.length - split);
+			assertEquals(whole, Checksums.combine(first, second, data.length - split), "split " + split);
+		}
+	}
+
+	@Test
+	void segmentChecksumEqualsArrayChecksum() {
+		byte[] data = Samples.random(100_000);
+		assertEquals(Checksums.crc32c(data, 0, data.length),
+				Checksums.crc32c(MemorySegment.ofArray(data)));
+	}
+
+	// The file checksum is folded from the block checksums, on and off the heap
+	@Test
+	void indexHoldsChecksumOfWholeFile() throws IOException {
+		byte[] data = Samples.text(200_000);
+		Path input = Samples.write(dir, "input.txt", data);
+		for (boolean offHeap : new boolean[] { false, true }) {
+			HuffmanCodec codec = new HuffmanCodec();
+			codec.setBlockSize(12_345);
+			codec.setOffHeap(offHeap);
+			Path compressed = codec.compress(input).getOutput();
+			try (FileChannel channel = FileChannel.open(compressed)) {
+				assertEquals(Checksums.crc32c(data, 0, data.length), BlockIndex.read(channel, 12_345).getChecksum());
+			}
+		}
+	}
+
+	// Intact blocks with a wrong file checksum, as after dropping or swapping blocks, are caught
+	@Test
+	void wrongFileChecksumThrowsIOException() throws IOException {
+		Path compressed = new HuffmanCodec().compress(Samples.write(dir, "input.txt", Samples.text(50_000)))
+				.getOutput();
+		byte[] data = Files.readAllBytes(compressed);
+		// The file checksum is the last field before the index position and magic number
+		data[data.length - 13] ^= 1;
+		Files.write(compressed, data);
+
+		IOException e = assertThrows(IOException.class, () -> new HuffmanCodec().verify(compressed));
+		assertEquals("Checksum mismatch for the whole file: the file is corrupt.", e.getMessage());
+	}
+}
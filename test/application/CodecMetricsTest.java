@@ -0,0 +1,140 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class CodecMetricsTest {
+
+	private static final String EVENT = "application.HuffmanPhase";
+
+	@TempDir
+	Path dir;
+
+	// 100000 bytes of text in blocks of 16 KB are seven Huffman coded blocks
+	@Test
+	void compressionCountsEveryBlockAndByte() throws IOException {
+		Path input = Samples.write(dir, "input.txt", Samples.text(100_000));
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setBlockSize(16 * 1024);
+		codec.setParallelism(3);
+
+		CodecResult result = codec.compress(input);
+		CodecMetrics metrics = result.getMetrics();
+		assertEquals(100_000, metrics.getOriginalSize());
+		assertEquals(Files.size(result.getOutput()), metrics.getCompressedSize());
+		assertEquals(7, metrics.getCount(CodecMetrics.Phase.ENCODE));
+		assertEquals(100_000, metrics.getBytes(CodecMetrics.Phase.ENCODE));
+		// The whole file for the shared table, then every block again
+		assertEquals(8, metrics.getCount(CodecMetrics.Phase.HISTOGRAM));
+		assertEquals(200_000, metrics.getBytes(CodecMetrics.Phase.HISTOGRAM));
+		// Each block once; the file checksum is combined from the block checksums
+		assertEquals(7, metrics.getCount(CodecMetrics.Phase.CHECKSUM));
+		assertEquals(100_000, metrics.getBytes(CodecMetrics.Phase.CHECKSUM));
+		assertEquals(1, metrics.getCount(CodecMetrics.Phase.TREE));
+		assertEquals(0, metrics.getCount(CodecMetrics.Phase.DECODE));
+		assertTrue(metrics.getElapsedNanos() > 0);
+		assertTrue(metrics.getEntropy() > 0);
+		assertTrue(metrics.getAverageCodeLength() >= metrics.getEntropy());
+		assertTrue(metrics.toString().contains("Encode"));
+	}
+
+	@Test
+	void decompressionCountsEveryBlockAndByte() throws IOException {
+		Path input = Samples.write(dir, "input.txt", Samples.text(100_000));
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setBlockSize(16 * 1024);
+		Path compressed = codec.compress(input).getOutput();
+
+		for (CodecResult result : List.of(codec.decompress(compressed, dir.resolve("restored.txt")),
+				codec.verify(compressed))) {
+			CodecMetrics metrics = result.getMetrics();
+			assertEquals(100_000, metrics.getOriginalSize());
+			assertEquals(Files.size(compressed), metrics.getCompressedSize());
+			assertEquals(7, metrics.getCount(CodecMetrics.Phase.DECODE));
+			assertEquals(100_000, metrics.getBytes(CodecMetrics.Phase.DECODE));
+			assertEquals(7, metrics.getCount(CodecMetrics.Phase.CHECKSUM));
+			assertEquals(0, metrics.getCount(CodecMetrics.Phase.ENCODE));
+		}
+	}
+
+	@Test
+	void streamsHaveNoMetrics() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec();
+		Path input = Samples.write(dir, "input.txt", Samples.text(10_000));
+		try (var in = Files.newInputStream(input); var out = Files.newOutputStream(dir.resolve("input.stream"))) {
+			assertNull(codec.compress(in, out).getMetrics());
+		}
+	}
+
+	// Every timed phase is one event while a recording is running, matching the counts in the metrics
+	@Test
+	void recordingGetsOneEventPerPhase() throws IOException {
+		Path input = Samples.write(dir, "input.txt", Samples.text(100_000));
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setBlockSize(16 * 1024);
+
+		CodecMetrics metrics;
+		Path file = dir.resolve("enabled.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(EVENT).withoutThreshold();
+			recording.start();
+			metrics = codec.compress(input).getMetrics();
+			recording.stop();
+			recording.dump(file);
+		}
+
+		long phases = 0;
+		for (CodecMetrics.Phase phase : CodecMetrics.Phase.values()) {
+			phases += metrics.getCount(phase);
+		}
+		List<RecordedEvent> events = events(file);
+		assertEquals(phases, events.size());
+		long encoded = events.stream().filter(event -> event.getString("phase").equals("Encode"))
+				.mapToLong(event -> event.getLong("bytes")).sum();
+		assertEquals(100_000, encoded);
+	}
+
+	// With the event disabled, or no recording at all, nothing is committed but the metrics are still kept
+	@Test
+	void disabledEventIsNotCommitted() throws IOException {
+		Path input = Samples.write(dir, "input.txt", Samples.text(100_000));
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setBlockSize(16 * 1024);
+
+		CodecMetrics metrics;
+		Path file = dir.resolve("disabled.jfr");
+		try (Recording recording = new Recording()) {
+			recording.disable(EVENT);
+			recording.start();
+			assertFalse(new PhaseEvent().isEnabled());
+			metrics = codec.compress(input).getMetrics();
+			recording.stop();
+			recording.dump(file);
+		}
+		assertEquals(0, events(file).size());
+		assertEquals(7, metrics.getCount(CodecMetrics.Phase.ENCODE));
+
+		assertFalse(new PhaseEvent().isEnabled());
+		PhaseEvent event = new CodecMetrics().begin(CodecMetrics.Phase.ENCODE);
+		assertFalse(event.shouldCommit());
+	}
+
+	private static List<RecordedEvent> events(Path file) throws IOException {
+		return RecordingFile.readAllEvents(file).stream()
+				.filter(event -> event.getEventType().getName().equals(EVENT)).toList();
+	}
+}
@@ -0,0 +1,277 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileCompressorTest {
+
+	@TempDir
+	Path dir;
+
+	// The pipeline's threads are waited for before the mapped input is released
+	@Test
+	void interruptedOffHeapCompressionThrowsIOExceptionAndKeepsInterrupt() throws IOException {
+		Path input = Samples.write(dir, "input.txt", Samples.text(16_000_000));
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setBlockSize(2_000_000);
+		codec.setParallelism(4);
+		codec.setOffHeap(true);
+		codec.setProgressListener((done, total) -> Thread.currentThread().interrupt());
+
+		assertThrows(IOException.class, () -> codec.compress(input));
+		assertTrue(Thread.interrupted());
+		assertTrue(Thread.getAllStackTraces().keySet().stream()
+				.noneMatch(thread -> thread.getName().equals("huffman-pipeline")));
+	}
+
+	// Fibonacci counts of 28 symbols give a Huffman tree 27 levels deep
+	static byte[] skewed() {
+		byte[] data = new byte[832_039];
+		int position = 0;
+		int previous = 0;
+		int current = 1;
+		for (int symbol = 0; symbol < 28; symbol++) {
+			for (int i = 0; i < current; i++) {
+				data[position++] = (byte) ('A' + symbol);
+			}
+			int next = previous + current;
+			previous = current;
+			current = next;
+		}
+		return data;
+	}
+
+	@Test
+	void compressWritesTheCodeOfEveryByteInOrder() throws IOException {
+		for (byte[] data : new byte[][] { Samples.text(200_000), skewed() }) {
+			int[] frequencies = new int[HuffmanTable.SYMBOLS];
+			for (byte b : data) {
+				frequencies[b & 0xFF]++;
+			}
+			BinaryTree tree = FileCompressor.buildHuffmanTree(frequencies);
+			HuffmanTable table = HuffmanTable.fromTree(tree);
+			StringBuilder expected = new StringBuilder();
+			for (byte b : data) {
+				expected.append(BitWriterTest.bits(table.getCode(b & 0xFF), table.getLength(b & 0xFF)));
+			}
+
+			Path input = Samples.write(dir, "input.txt", data);
+			assertArrayEquals(BitWriterTest.pack(expected), new FileCompressor().compress(input.toString(), tree));
+		}
+	}
+
+	@Test
+	void countFrequenciesCountsEveryByteValue() throws IOException {
+		byte[] data = Samples.random(300_000);
+		long[] expected = new long[HuffmanTable.SYMBOLS];
+		for (byte b : data) {
+			expected[b & 0xFF]++;
+		}
+		Path input = Samples.write(dir, "input.bin", data);
+		assertArrayEquals(expected, FileCompressor.countFrequencies(input.toString()));
+	}
+
+	// Writing to a stream or a channel gives the same bytes as compressing into memory
+	@Test
+	void streamingCompressWritesTheSameBytes() throws IOException {
+		byte[] data = Samples.text(500_000);
+		Path input = Samples.write(dir, "input.txt", data);
+		BinaryTree tree = FileCompressor.buildHuffmanTree(FileCompressor.countFrequencies(input.toString()));
+		FileCompressor compressor = new FileCompressor();
+		byte[] expected = compressor.compress(input.toString(), tree);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(expected.length, compressor.compress(new ByteArrayInputStream(data), HuffmanTable.fromTree(tree),
+				out));
+		assertArrayEquals(expected, out.toByteArray());
+
+		Path output = dir.resolve("output.huff");
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			assertEquals(expected.length, compressor.compress(input.toString(), tree, channel));
+		}
+		assertArrayEquals(expected, Files.readAllBytes(output));
+	}
+
+	@Test
+	void byteMissingFromTheTreeIsRejected() throws IOException {
+		HuffmanTable table = HuffmanTable.fromTree(FileCompressor
+				.buildHuffmanTree(FileCompressor.countFrequencies(new ByteArrayInputStream(Samples.text(1000)))));
+		assertThrows(IllegalArgumentException.class, () -> new FileCompressor()
+				.compress(new ByteArrayInputStream(new byte[] { 0 }), table, OutputStream.nullOutputStream()));
+	}
+
+	// Blocks are coded in parallel but written in order, each with its own table or the shared one
+	@Test
+	void compressFileWritesEveryBlockInOrder() throws IOException {
+		byte[] data = Samples.text(3_000_000);
+		Path input = Samples.write(dir, "input.txt", data);
+		for (boolean shared : new boolean[] { true, false }) {
+			byte[] serial = compressFile(input, shared, 1);
+			byte[] parallel = compressFile(input, shared, 4);
+			assertArrayEquals(serial, parallel, "shared " + shared);
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(parallel));
+			HuffmanHeader header = HuffmanHeader.read(in);
+			assertEquals(shared, header.isSharedTable());
+			assertEquals(12, header.getBlockCount());
+			int headerSize = parallel.length - in.available();
+			ByteArrayOutputStream restored = new ByteArrayOutputStream();
+			assertEquals(data.length, FileDecompressor.decompressBlocks(in, header, restored));
+			assertArrayEquals(data, restored.toByteArray());
+
+			// The index at the end lists blocks that follow each other without gaps
+			ByteBuffer trailer = ByteBuffer.wrap(parallel);
+			assertEquals(BlockIndex.MAGIC, trailer.getInt(parallel.length - 4));
+			long indexPosition = trailer.getLong(parallel.length - 12);
+			trailer.position((int) indexPosition);
+			assertEquals(12, trailer.getInt());
+			long offset = headerSize;
+			for (int block = 0; block < 12; block++) {
+				assertEquals(offset, trailer.getLong());
+				assertEquals(Math.min(256 * 1024, data.length - block * 256 * 1024), trailer.getInt());
+				offset += trailer.getInt();
+			}
+			assertEquals(indexPosition, offset);
+		}
+	}
+
+	// Frames go to a channel from direct buffers; the stream overload must write the very same file
+	@Test
+	void compressFileToAChannelWritesTheSameBytes() throws IOException {
+		Path input = Samples.write(dir, "input.txt", Samples.text(1_000_000));
+		Path output = dir.resolve("input.huff");
+		FileCompressor compressor = new FileCompressor();
+		compressor.setBlockSize(256 * 1024);
+		compressor.setParallelism(4);
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			long size = compressor.compressFile(input.toString(), channel);
+			assertEquals(channel.size(), size);
+		}
+		assertArrayEquals(compressFile(input, true, 4), Files.readAllBytes(output));
+	}
+
+	private byte[] compressFile(Path input, boolean shared, int parallelism) throws IOException {
+		FileCompressor compressor = new FileCompressor();
+		compressor.setBlockSize(256 * 1024);
+		compressor.setSharedTable(shared);
+		compressor.setParallelism(parallelism);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long size = compressor.compressFile(input.toString(), out);
+		assertEquals(out.size(), size);
+		return out.toByteArray();
+	}
+
+	private static byte[] frame(byte[] data, HuffmanTable sharedTable, boolean interleaved) throws IOException {
+		ByteBuffer frame = FileCompressor.encodeBlock(data, data.length, sharedTable, HuffmanTable.MAX_CODE_LENGTH,
+				interleaved).frame;
+		byte[] bytes = new byte[frame.remaining()];
+		frame.get(bytes);
+		return bytes;
+	}
+
+	// Original size, payload size, block type and checksum come before the payload
+	private static void assertFrame(byte[] data, int type, int payloadSize, byte[] frame) throws IOException {
+		ByteBuffer header = ByteBuffer.wrap(frame);
+		assertEquals(data.length, header.getInt());
+		assertEquals(payloadSize, header.getInt());
+		assertEquals(type, header.get());
+		assertEquals(Checksums.crc32c(data, 0, data.length), header.getInt());
+		assertEquals(13 + payloadSize, frame.length);
+
+		byte[] restored = new byte[data.length];
+		FileDecompressor.restoreBlock(type, null, frame, 13, payloadSize, restored, data.length, false);
+		assertArrayEquals(data, restored);
+	}
+
+	@Test
+	void singleByteBlockIsStoredAsRun() throws IOException {
+		byte[] data = Samples.single(10_000, 'q');
+		HuffmanTable shared = HuffmanTable.fromFrequencies(FrequencyCounter.count(data, 0, data.length));
+		for (boolean interleaved : new boolean[] { false, true }) {
+			assertFrame(data, HuffmanHeader.BLOCK_RUN, 1, frame(data, null, interleaved));
+			assertFrame(data, HuffmanHeader.BLOCK_RUN, 1, frame(data, shared, interleaved));
+		}
+		assertFrame(new byte[] { 5 }, HuffmanHeader.BLOCK_RUN, 1, frame(new byte[] { 5 }, null, false));
+	}
+
+	// Without a shared table random data never gets a tree; with one it takes at least a byte per byte
+	@Test
+	void incompressibleBlockIsStoredRaw() throws IOException {
+		byte[] data = Samples.random(10_000);
+		// Trained on nothing, so every byte gets an 8-bit code
+		HuffmanTable uniform = HuffmanDictionary.train(1, new long[HuffmanTable.SYMBOLS], 8).getTable();
+		for (boolean interleaved : new boolean[] { false, true }) {
+			assertFrame(data, HuffmanHeader.BLOCK_RAW, data.length, frame(data, null, interleaved));
+			assertFrame(data, HuffmanHeader.BLOCK_RAW, data.length, frame(data, uniform, interleaved));
+			// Too short to make up for its code lengths
+			byte[] tiny = { 1, 2, 3 };
+			assertFrame(tiny, HuffmanHeader.BLOCK_RAW, 3, frame(tiny, null, interleaved));
+		}
+	}
+
+	@Test
+	void compressibleBlockIsCoded() throws IOException {
+		byte[] frame = frame(Samples.text(10_000), null, false);
+		assertEquals(HuffmanHeader.BLOCK_HUFFMAN, frame[8]);
+		assertTrue(frame.length < 10_000 * 0.7);
+	}
+
+	// Text, noise and a run each get the block type that suits them, and the file restores in one piece
+	@Test
+	void blocksOfAFileGetTheirOwnType() throws IOException {
+		int blockSize = 20_000;
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.writeBytes(Samples.text(blockSize));
+		data.writeBytes(Samples.random(blockSize));
+		data.writeBytes(Samples.single(blockSize, 0));
+		data.writeBytes(Samples.text(blockSize / 2));
+		Path input = Samples.write(dir, "input.bin", data.toByteArray());
+		int[] expected = { HuffmanHeader.BLOCK_HUFFMAN, HuffmanHeader.BLOCK_RAW, HuffmanHeader.BLOCK_RUN,
+				HuffmanHeader.BLOCK_HUFFMAN };
+
+		for (boolean sharedTable : new boolean[] { false, true }) {
+			HuffmanCodec codec = new HuffmanCodec();
+			codec.setBlockSize(blockSize);
+			codec.setSharedTable(sharedTable);
+			Path compressed = codec.compress(input).getOutput();
+			byte[] bytes = Files.readAllBytes(compressed);
+			try (FileChannel channel = FileChannel.open(compressed)) {
+				BlockIndex index = BlockIndex.read(channel, blockSize);
+				assertEquals(expected.length, index.getBlockCount());
+				for (int block = 0; block < expected.length; block++) {
+					assertEquals(expected[block], bytes[(int) index.getOffset(block) + 8],
+							"block " + block + ", shared table " + sharedTable);
+				}
+			}
+			assertArrayEquals(data.toByteArray(), Files.readAllBytes(codec.decompress(compressed).getOutput()));
+		}
+	}
+
+	@Test
+	void payloadSizeThatDoesNotFitTheTypeThrowsIOException() {
+		byte[] payload = new byte[100];
+		byte[] output = new byte[100];
+		assertThrows(IOException.class,
+				() -> FileDecompressor.restoreBlock(HuffmanHeader.BLOCK_RAW, null, payload, 0, 99, output, 100, false));
+		assertThrows(IOException.class,
+				() -> FileDecompressor.restoreBlock(HuffmanHeader.BLOCK_RUN, null, payload, 0, 2, output, 100, false));
+		assertThrows(IOException.class,
+				() -> FileDecompressor.restoreBlock(7, null, payload, 0, 100, output, 100, false));
+	}
+}
@@ -0,0 +1,248 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileDecompressorTest {
+
+	@TempDir
+	Path dir;
+
+	private Path compress(byte[] data, int blockSize) throws IOException {
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setBlockSize(blockSize);
+		return codec.compress(Samples.write(dir, "input.txt", data), dir.resolve("input.huff")).getOutput();
+	}
+
+	@Test
+	void restoresEveryBlockInParallel() throws IOException {
+		byte[] data = Samples.text(300_000);
+		Path compressed = compress(data, 16 * 1024);
+
+		Path restored = dir.resolve("restored.txt");
+		HuffmanHeader header = FileDecompressor.decompressFile(compressed.toString(), restored.toString(), 4);
+
+		assertEquals(data.length, header.getOriginalLength());
+		assertArrayEquals(data, Files.readAllBytes(restored));
+	}
+
+	private static HuffmanTable table(byte[] data) throws IOException {
+		return HuffmanTable.fromTree(
+				FileCompressor.buildHuffmanTree(FileCompressor.countFrequencies(new ByteArrayInputStream(data))));
+	}
+
+	private static byte[] compress(byte[] data, HuffmanTable table) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new FileCompressor().compress(new ByteArrayInputStream(data), table, out);
+		return out.toByteArray();
+	}
+
+	// Exactly the original bytes come back, whatever the padding bits of the last byte would decode to
+	@Test
+	void streamingDecompressRestoresTheExactLength() throws IOException {
+		for (byte[] data : new byte[][] { Samples.text(1_000_000), Samples.random(100_000),
+				FileCompressorTest.skewed(), Samples.single(1000, 'x') }) {
+			HuffmanTable table = table(data);
+			byte[] compressed = compress(data, table);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			assertEquals(data.length, FileDecompressor.decompress(new ByteArrayInputStream(compressed), table,
+					data.length, out));
+			assertArrayEquals(data, out.toByteArray());
+
+			out.reset();
+			FileDecompressor.decompress(Channels.newChannel(new ByteArrayInputStream(compressed)), table, data.length,
+					Channels.newChannel(out));
+			assertArrayEquals(data, out.toByteArray());
+		}
+	}
+
+	@Test
+	void truncatedDataThrowsEOFException() throws IOException {
+		byte[] data = Samples.text(100_000);
+		HuffmanTable table = table(data);
+		byte[] compressed = compress(data, table);
+		byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+
+		assertThrows(EOFException.class, () -> FileDecompressor.decompress(new ByteArrayInputStream(truncated), table,
+				data.length, new ByteArrayOutputStream()));
+	}
+
+	// A single flipped bit anywhere in the blocks is reported as an IOException, never as a wrapped one
+	@Test
+	void flippedBitInBlocksThrowsIOException() throws IOException {
+		Path compressed = compress(Samples.text(100_000), 8 * 1024);
+		byte[] original = Files.readAllBytes(compressed);
+		long first;
+		long end;
+		try (FileChannel channel = FileChannel.open(compressed)) {
+			BlockIndex index = BlockIndex.read(channel, 8 * 1024);
+			int last = index.getBlockCount() - 1;
+			first = index.getOffset(0);
+			end = index.getOffset(last) + index.getCompressedSize(last);
+		}
+
+		Path corrupt = dir.resolve("corrupt.huff");
+		for (long bit = 8 * first; bit < 8 * end; bit += 1009) {
+			byte[] data = original.clone();
+			data[(int) (bit >>> 3)] ^= (byte) (1 << (bit & 7));
+			Files.write(corrupt, data);
+			assertThrows(IOException.class, () -> FileDecompressor.verifyFile(corrupt.toString(), 4, null),
+					"bit " + bit);
+			assertThrows(IOException.class, () -> FileDecompressor.decompressFile(corrupt.toString(),
+					dir.resolve("corrupt.txt").toString(), 4), "bit " + bit);
+		}
+	}
+
+	// Blocks whose length is not a multiple of the stream count leave the last stream shorter
+	@Test
+	void interleavedBlocksOfUnevenLengthsRoundTrip() throws IOException {
+		byte[] data = Samples.text(5000);
+		HuffmanTable table = table(data);
+		HuffmanDecoder decoder = new HuffmanDecoder(table);
+		for (int length : new int[] { 40, 41, 42, 43, 97, 1001, 5000 }) {
+			ByteBuffer frame = FileCompressor.encodeBlock(data, length, table, HuffmanTable.MAX_CODE_LENGTH, true)
+					.frame;
+			byte[] bytes = new byte[frame.remaining()];
+			frame.get(bytes);
+			// Original size, payload size, block type and checksum come before the payload
+			assertEquals(HuffmanHeader.BLOCK_HUFFMAN, bytes[8], "length " + length);
+
+			byte[] restored = new byte[length];
+			FileDecompressor.restoreBlock(bytes[8], decoder, bytes, 13, bytes.length - 13, restored, length, true);
+			assertArrayEquals(Arrays.copyOf(data, length), restored, "length " + length);
+		}
+	}
+
+	// Two symbols take one bit each, so even blocks of under 40 bytes are coded rather than stored raw
+	@Test
+	void interleavedFilesOfTinyBlocksRoundTrip() throws IOException {
+		byte[] data = new byte[1000];
+		Random random = new Random(3);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (random.nextBoolean() ? 'a' : 'b');
+		}
+		Path input = Samples.write(dir, "input.txt", data);
+		for (int blockSize : new int[] { 37, 38, 39, 40 }) {
+			HuffmanCodec codec = new HuffmanCodec();
+			codec.setInterleaved(true);
+			codec.setBlockSize(blockSize);
+			Path compressed = codec.compress(input).getOutput();
+			assertArrayEquals(data, Files.readAllBytes(codec.decompress(compressed).getOutput()),
+					"blocks of " + blockSize);
+		}
+	}
+
+	// Stream sizes that are out of range or merely shifted are caught, by the jump table check or the checksum
+	@Test
+	void corruptJumpTableThrowsIOException() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setInterleaved(true);
+		codec.setBlockSize(16 * 1024);
+		Path compressed = codec.compress(Samples.write(dir, "input.txt", Samples.text(50_000))).getOutput();
+		byte[] original = Files.readAllBytes(compressed);
+		int jumpTable;
+		try (FileChannel channel = FileChannel.open(compressed)) {
+			// With a shared table the payload, and its jump table, follow the 13 byte frame header
+			jumpTable = (int) BlockIndex.read(channel, 16 * 1024).getOffset(0) + 13;
+		}
+		assertEquals(HuffmanHeader.BLOCK_HUFFMAN, original[jumpTable - 5]);
+
+		Path corrupt = dir.resolve("corrupt.huff");
+		for (int stream = 0; stream < HuffmanDecoder.STREAMS - 1; stream++) {
+			int size = ByteBuffer.wrap(original).getInt(jumpTable + 4 * stream);
+			for (int wrong : new int[] { -1, size - 1, size + 1, Integer.MAX_VALUE }) {
+				byte[] data = original.clone();
+				ByteBuffer.wrap(data).putInt(jumpTable + 4 * stream, wrong);
+				Files.write(corrupt, data);
+				assertThrows(IOException.class, () -> codec.verify(corrupt), "stream " + stream + ": " + wrong);
+			}
+		}
+	}
+
+	// Sizes that still point inside the file but no block of this file could have are caught by the index itself
+	@Test
+	void corruptIndexEntryThrowsIOException() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setBlockSize(16 * 1024);
+		Path compressed = codec.compress(Samples.write(dir, "input.txt", Samples.text(50_000))).getOutput();
+		byte[] original = Files.readAllBytes(compressed);
+		// The index starts with the block count, then the offset, original size and compressed size of each block
+		int entry = (int) ByteBuffer.wrap(original).getLong(original.length - 12) + 4;
+		assertEquals(16 * 1024, ByteBuffer.wrap(original).getInt(entry + 8));
+
+		Path corrupt = dir.resolve("corrupt.huff");
+		int[][] damage = { { 8, 16 * 1024 + 1 }, { 8, Integer.MAX_VALUE },
+				{ 12, FileCompressor.maxFrameSize(16 * 1024) + 1 }, { 12, Integer.MAX_VALUE } };
+		for (int[] field : damage) {
+			byte[] data = original.clone();
+			ByteBuffer.wrap(data).putInt(entry + field[0], field[1]);
+			Files.write(corrupt, data);
+			String name = "field " + field[0] + ": " + field[1];
+			try (FileChannel channel = FileChannel.open(corrupt)) {
+				IOException e = assertThrows(IOException.class, () -> BlockIndex.read(channel, 16 * 1024), name);
+				assertEquals("Corrupt block index entry 0.", e.getMessage(), name);
+			}
+			assertThrows(IOException.class, () -> codec.verify(corrupt), name);
+			assertThrows(IOException.class, () -> codec.decompress(corrupt, dir.resolve("corrupt.txt")), name);
+			assertThrows(IOException.class, () -> HuffmanFile.open(corrupt), name);
+		}
+	}
+
+	// Cancelling interrupts the decoding thread; the tasks are waited for before the output is unmapped
+	@Test
+	void interruptedDecompressionThrowsIOExceptionAndKeepsInterrupt() throws IOException {
+		Path compressed = compress(Samples.text(4_000_000), 64 * 1024);
+
+		ProgressListener cancel = (done, total) -> Thread.currentThread().interrupt();
+		assertThrows(IOException.class, () -> FileDecompressor.decompressFile(compressed.toString(),
+				dir.resolve("restored.txt").toString(), 4, null, cancel));
+		assertTrue(Thread.interrupted());
+	}
+
+	// A frame that claims a huge payload is rejected before the payload is allocated
+	@Test
+	void impossiblePayloadSizeThrowsIOException() throws IOException {
+		HuffmanTable table = HuffmanTable.fromFrequencies(new int[] { 1, 2, 3 });
+		HuffmanHeader header = new HuffmanHeader("txt", 100, 1024, table);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(100);
+		out.writeInt(Integer.MAX_VALUE - 8);
+
+		IOException e = assertThrows(IOException.class, () -> FileDecompressor.decompressBlocks(
+				new ByteArrayInputStream(bytes.toByteArray()), header, OutputStream.nullOutputStream(), 2));
+		assertEquals("Corrupt block: 100 bytes in " + (Integer.MAX_VALUE - 8) + ".", e.getMessage());
+	}
+
+	@Test
+	void truncatedFileThrowsIOException() throws IOException {
+		byte[] original = Files.readAllBytes(compress(Samples.text(50_000), 4096));
+
+		Path truncated = dir.resolve("truncated.huff");
+		for (int length : new int[] { 0, 10, original.length / 2, original.length - 1 }) {
+			Files.write(truncated, Arrays.copyOf(original, length));
+			assertThrows(IOException.class, () -> FileDecompressor.verifyFile(truncated.toString(), 2, null),
+					"length " + length);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FrequencyCounterTest {
+
+	@TempDir
+	Path dir;
+
+	private static long[] expected(byte[] data) {
+		long[] expected = new long[256];
+		for (byte b : data) {
+			expected[b & 0xFF]++;
+		}
+		return expected;
+	}
+
+	@Test
+	void countsEveryByteInParallel() throws IOException {
+		byte[] data = Samples.random(1_000_003);
+		long[] expected = expected(data);
+		Path input = Samples.write(dir, "input.bin", data);
+		for (int parallelism : new int[] { 1, 3, 8 }) {
+			assertArrayEquals(expected, FrequencyCounter.count(input, parallelism), "parallelism " + parallelism);
+		}
+	}
+
+	// Three slices, the last one a few bytes long and not a whole number of words
+	@Test
+	void countsAcrossSlices() throws IOException {
+		byte[] data = Samples.random(2 * FrequencyCounter.SLICE_SIZE + 5);
+		data[data.length - 1] = 7;
+		long[] expected = expected(data);
+		Path input = Samples.write(dir, "input.bin", data);
+		assertArrayEquals(expected, FrequencyCounter.count(input, 2));
+	}
+
+	// More than 2^31 occurrences of one byte, which overflowed the int counts
+	@Test
+	void countsAndRoundTripsFileOver2GB() throws IOException {
+		long size = (1L << 31) + 12_345;
+		Path input = dir.resolve("zeros.bin");
+		// Sparse, so the file takes no disk space until it is restored
+		try (RandomAccessFile file = new RandomAccessFile(input.toFile(), "rw")) {
+			file.setLength(size);
+		}
+
+		long[] counts = FrequencyCounter.count(input);
+		assertEquals(size, counts[0]);
+		assertEquals(size, Arrays.stream(counts).sum());
+
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setSharedTable(true);
+		Path compressed = codec.compress(input).getOutput();
+		Path restored = codec.decompress(compressed, dir.resolve("restored.bin")).getOutput();
+		assertEquals(size, Files.size(restored));
+		assertEquals(-1, Files.mismatch(input, restored));
+	}
+}
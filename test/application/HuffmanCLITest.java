@@ -0,0 +1,53 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HuffmanCLITest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void compressesAndRestoresADirectory() throws IOException, InterruptedException {
+		byte[] text = Samples.text(50_000);
+		byte[] random = Samples.random(20_000);
+		Samples.write(dir, "a.txt", text);
+		Samples.write(dir, "b.bin", random);
+		HuffmanCodec codec = new HuffmanCodec();
+
+		assertTrue(HuffmanCLI.run(codec, HuffmanCLI.collectFiles(List.of(dir), true), "compress", 2));
+		Files.delete(dir.resolve("a.txt"));
+		Files.delete(dir.resolve("b.bin"));
+		assertTrue(HuffmanCLI.run(codec, HuffmanCLI.collectFiles(List.of(dir), false), "decompress", 2));
+		assertArrayEquals(text, Files.readAllBytes(dir.resolve("a_decompressed.txt")));
+		assertArrayEquals(random, Files.readAllBytes(dir.resolve("b_decompressed.bin")));
+	}
+
+	// foo.c and foo.h would both be compressed to foo.huff, so neither is; the other files still are
+	@Test
+	void filesWithTheSameOutputAreSkipped() throws IOException, InterruptedException {
+		Path source = Samples.write(dir, "foo.c", Samples.text(10_000));
+		Path header = Samples.write(dir, "foo.h", Samples.text(3_000));
+		Path other = Samples.write(dir, "bar.c", Samples.text(5_000));
+		HuffmanCodec codec = new HuffmanCodec();
+
+		List<Path> files = List.of(source, header, other);
+		assertEquals(Set.of(source, header), HuffmanCLI.outputClashes(codec, files, "compress"));
+		assertFalse(HuffmanCLI.run(codec, files, "compress", 2));
+		assertFalse(Files.exists(dir.resolve("foo.huff")));
+		assertTrue(Files.exists(dir.resolve("bar.huff")));
+		assertTrue(HuffmanCLI.outputClashes(codec, List.of(source, header), "verify").isEmpty());
+	}
+}
@@ -0,0 +1,136 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HuffmanCodecTest {
+
+	@TempDir
+	Path dir;
+
+	private static Map<String, byte[]> corpora() {
+		Map<String, byte[]> corpora = new LinkedHashMap<>();
+		corpora.put("empty", new byte[0]);
+		corpora.put("one byte", new byte[] { 42 });
+		corpora.put("text", Samples.text(150_000));
+		corpora.put("random", Samples.random(70_000));
+		corpora.put("single", Samples.single(90_000, 'x'));
+		byte[] mixed = Samples.text(100_000);
+		System.arraycopy(Samples.random(30_000), 0, mixed, 40_000, 30_000);
+		corpora.put("mixed", mixed);
+		return corpora;
+	}
+
+	private static Map<String, Consumer<HuffmanCodec>> configs() {
+		Map<String, Consumer<HuffmanCodec>> configs = new LinkedHashMap<>();
+		configs.put("default", codec -> {
+		});
+		configs.put("per-block tables", codec -> codec.setSharedTable(false));
+		configs.put("max code length 8", codec -> codec.setMaxCodeLength(8));
+		configs.put("interleaved", codec -> codec.setInterleaved(true));
+		configs.put("off-heap", codec -> codec.setOffHeap(true));
+		configs.put("seek index", codec -> codec.setCheckpointInterval(4096));
+		return configs;
+	}
+
+	// Every corpus comes back byte for byte in every configuration, with blocks smaller than the input
+	@Test
+	void roundTripsEveryCorpusInEveryConfiguration() throws IOException {
+		for (Map.Entry<String, byte[]> corpus : corpora().entrySet()) {
+			Path input = Samples.write(dir, "input.txt", corpus.getValue());
+			for (Map.Entry<String, Consumer<HuffmanCodec>> config : configs().entrySet()) {
+				String name = corpus.getKey() + ", " + config.getKey();
+				HuffmanCodec codec = new HuffmanCodec();
+				codec.setBlockSize(16 * 1024);
+				codec.setParallelism(3);
+				config.getValue().accept(codec);
+
+				CodecResult compressed = codec.compress(input);
+				assertEquals(corpus.getValue().length, compressed.getOriginalSize(), name);
+				assertEquals(Files.size(compressed.getOutput()), compressed.getCompressedSize(), name);
+				codec.verify(compressed.getOutput());
+				Path restored = codec.decompress(compressed.getOutput()).getOutput();
+				assertEquals(dir.resolve("input_decompressed.txt"), restored, name);
+				assertArrayEquals(corpus.getValue(), Files.readAllBytes(restored), name);
+			}
+		}
+	}
+
+	// Progress is reported once per block, with a new byte count each time, up to the file size
+	@Test
+	void progressIsReportedForEveryBlock() throws IOException {
+		Path input = Samples.write(dir, "input.txt", Samples.text(100_000));
+		List<long[]> reports = new ArrayList<>();
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setBlockSize(16 * 1024);
+		codec.setProgressListener((done, total) -> {
+			synchronized (reports) {
+				reports.add(new long[] { done, total });
+			}
+		});
+
+		Path compressed = codec.compress(input).getOutput();
+		assertProgress(reports, 7, 100_000);
+		reports.clear();
+		codec.decompress(compressed, dir.resolve("restored.txt"));
+		assertProgress(reports, 7, 100_000);
+	}
+
+	private static void assertProgress(List<long[]> reports, int blocks, long size) {
+		assertEquals(blocks, reports.size());
+		// Blocks restored in parallel may report out of order
+		reports.sort(Comparator.comparingLong(report -> report[0]));
+		long previous = 0;
+		for (long[] report : reports) {
+			assertTrue(report[0] > previous, report[0] + " after " + previous);
+			assertEquals(size, report[1]);
+			previous = report[0];
+		}
+		assertEquals(size, previous);
+	}
+
+	@Test
+	void compressesTextToLessThanItsSize() throws IOException {
+		Path input = Samples.write(dir, "input.txt", Samples.text(200_000));
+		assertTrue(new HuffmanCodec().compress(input).getCompressionRatio() < 0.7);
+	}
+
+	@Test
+	void refusesToCompressHuffFiles() throws IOException {
+		Path compressed = new HuffmanCodec().compress(Samples.write(dir, "input.txt", Samples.text(1000)))
+				.getOutput();
+		assertThrows(IllegalArgumentException.class, () -> new HuffmanCodec().compress(compressed));
+	}
+
+	@Test
+	void settingsAreChecked() {
+		HuffmanCodec codec = new HuffmanCodec();
+		assertThrows(IllegalArgumentException.class, () -> codec.setBlockSize(0));
+		assertThrows(IllegalArgumentException.class, () -> codec.setParallelism(0));
+		assertThrows(IllegalArgumentException.class, () -> codec.setMaxCodeLength(7));
+		assertThrows(IllegalArgumentException.class, () -> codec.setMaxCodeLength(HuffmanTable.MAX_CODE_LENGTH + 1));
+		assertThrows(IllegalArgumentException.class, () -> codec.setCheckpointInterval(-1));
+	}
+
+	@Test
+	void notAHuffFileThrowsIOException() throws IOException {
+		Path bogus = Samples.write(dir, "bogus.huff", Samples.text(1000));
+		assertThrows(IOException.class, () -> new HuffmanCodec().decompress(bogus, dir.resolve("out.txt")));
+		assertThrows(IOException.class, () -> new HuffmanCodec().verify(bogus));
+	}
+}
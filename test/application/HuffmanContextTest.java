@@ -0,0 +1,112 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class HuffmanContextTest {
+
+	// Messages are written and read at an offset into larger arrays, as a caller with its own framing would
+	private static void assertRoundTrip(HuffmanContext context, byte[] data, String name) throws IOException {
+		byte[] compressed = new byte[3 + HuffmanContext.maxCompressedLength(data.length)];
+		int compressedSize = context.compress(data, 0, data.length, compressed, 3);
+		assertEquals(data.length, HuffmanContext.decompressedLength(compressed, 3), name);
+
+		byte[] restored = new byte[5 + data.length];
+		assertEquals(data.length, context.decompress(compressed, 3, compressedSize, restored, 5), name);
+		assertArrayEquals(data, Arrays.copyOfRange(restored, 5, restored.length), name);
+	}
+
+	@Test
+	void roundTripsMessagesOfEverySize() throws IOException {
+		HuffmanContext context = new HuffmanContext();
+		for (int size : new int[] { 0, 1, 2, 100, 4096, 65_536 }) {
+			assertRoundTrip(context, Samples.text(size), "text " + size);
+			assertRoundTrip(context, Samples.random(size), "random " + size);
+			assertRoundTrip(context, Samples.single(size, 'z'), "single " + size);
+		}
+	}
+
+	// The skewed data would need codes 27 bits long; the shortest limit still round-trips it
+	@Test
+	void roundTripsUnderTheShortestLimit() throws IOException {
+		assertRoundTrip(new HuffmanContext(8), FileCompressorTest.skewed(), "skewed");
+		assertThrows(IllegalArgumentException.class, () -> new HuffmanContext(7));
+		assertThrows(IllegalArgumentException.class, () -> new HuffmanContext(HuffmanTable.MAX_CODE_LENGTH + 1));
+	}
+
+	@Test
+	void warmedUpContextAllocatesNothing() throws IOException {
+		byte[] data = Samples.text(4096);
+		byte[] compressed = new byte[HuffmanContext.maxCompressedLength(data.length)];
+		byte[] restored = new byte[data.length];
+		HuffmanContext context = new HuffmanContext();
+		for (int i = 0; i < 20_000; i++) {
+			context.decompress(compressed, 0, context.compress(data, 0, data.length, compressed, 0), restored, 0);
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < 20_000; i++) {
+			context.decompress(compressed, 0, context.compress(data, 0, data.length, compressed, 0), restored, 0);
+		}
+		long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+		assertArrayEquals(data, restored);
+		// Less than one byte per message, which leaves room for the measurement itself
+		assertTrue(allocated < 20_000, allocated + " bytes allocated");
+	}
+
+	@Test
+	void truncatedOrCorruptMessageThrowsIOException() throws IOException {
+		byte[] data = Samples.text(10_000);
+		byte[] compressed = new byte[HuffmanContext.maxCompressedLength(data.length)];
+		int compressedSize = new HuffmanContext().compress(data, 0, data.length, compressed, 0);
+		byte[] restored = new byte[data.length];
+
+		for (int length : new int[] { 0, 1, 3, 40, compressedSize / 2 }) {
+			assertThrows(IOException.class, () -> new HuffmanContext().decompress(compressed, 0, length, restored, 0),
+					"length " + length);
+		}
+		// Twelve symbols claim a 1-bit code, which is no prefix code
+		byte[] corrupt = compressed.clone();
+		Arrays.fill(corrupt, 4, 10, (byte) 0x11);
+		assertThrows(IOException.class,
+				() -> new HuffmanContext().decompress(corrupt, 0, compressedSize, restored, 0));
+	}
+
+	// The length varint of a 10000-byte message takes two bytes; it must not be read past the message's end
+	@Test
+	void lengthCutOffByTheMessageEndThrowsEOFException() throws IOException {
+		byte[] data = Samples.text(10_000);
+		byte[] compressed = new byte[HuffmanContext.maxCompressedLength(data.length)];
+		int compressedSize = new HuffmanContext().compress(data, 0, data.length, compressed, 0);
+
+		assertEquals(data.length, HuffmanContext.decompressedLength(compressed, 0, compressedSize));
+		assertThrows(EOFException.class, () -> HuffmanContext.decompressedLength(compressed, 0, 1));
+		assertThrows(EOFException.class,
+				() -> new HuffmanContext().decompress(compressed, 0, 1, new byte[data.length], 0));
+		// Longer forms of the same number would put the header at the wrong place
+		assertThrows(IOException.class, () -> HuffmanContext.decompressedLength(new byte[] { (byte) 0x80, 0 }, 0));
+	}
+
+	@Test
+	void dictionaryIdCutOffByTheMessageEndThrowsEOFException() throws IOException {
+		HuffmanContext context = new HuffmanContext();
+		context.setDictionary(HuffmanDictionary.train(300, new long[HuffmanTable.SYMBOLS], 8));
+		byte[] data = Samples.text(100);
+		byte[] compressed = new byte[context.getDictionary().maxCompressedLength(data.length)];
+		context.compress(data, 0, data.length, compressed, 0);
+
+		// One byte of length, then the first of the id's two bytes
+		assertThrows(EOFException.class, () -> context.decompress(compressed, 0, 2, new byte[data.length], 0));
+	}
+}
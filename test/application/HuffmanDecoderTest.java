@@ -0,0 +1,83 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class HuffmanDecoderTest {
+
+	private static HuffmanTable table(byte[] data) {
+		int[] frequencies = new int[HuffmanTable.SYMBOLS];
+		for (byte b : data) {
+			frequencies[b & 0xFF]++;
+		}
+		return HuffmanTable.fromTree(FileCompressor.buildHuffmanTree(frequencies));
+	}
+
+	private static byte[] encode(byte[] data, HuffmanTable table) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitWriter writer = new BitWriter(out);
+		for (byte b : data) {
+			writer.writeBits(table.getCode(b & 0xFF), table.getLength(b & 0xFF));
+		}
+		writer.flush();
+		return out.toByteArray();
+	}
+
+	// Hands out at most 3 bytes per read, so the reader refills in the middle of codes
+	private static InputStream trickle(byte[] data) {
+		return new ByteArrayInputStream(data) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 3));
+			}
+		};
+	}
+
+	// Text codes fit the lookup table; the longest skewed codes take the slow path
+	@Test
+	void decodesShortAndLongCodesFromArraysAndStreams() throws IOException {
+		for (byte[] data : new byte[][] { Samples.text(300_000), FileCompressorTest.skewed() }) {
+			HuffmanTable table = table(data);
+			byte[] encoded = encode(data, table);
+			HuffmanDecoder decoder = new HuffmanDecoder(table);
+
+			byte[] decoded = new byte[data.length];
+			assertEquals(data.length, decoder.decode(new BitReader(encoded, 0, encoded.length), decoded, 0,
+					data.length));
+			assertArrayEquals(data, decoded);
+
+			decoded = new byte[data.length];
+			BitReader reader = new BitReader(trickle(encoded));
+			int position = 0;
+			int count;
+			while (position < data.length && (count = decoder.decode(reader, decoded, position,
+					Math.min(1000, data.length - position))) > 0) {
+				position += count;
+			}
+			assertEquals(data.length, position);
+			assertArrayEquals(data, decoded);
+		}
+	}
+
+	@Test
+	void decodeStopsWhenTheInputRunsOut() throws IOException {
+		byte[] data = Samples.text(1000);
+		HuffmanTable table = table(data);
+		byte[] encoded = encode(data, table);
+		byte[] decoded = new byte[data.length + 100];
+		int count = new HuffmanDecoder(table).decode(new BitReader(encoded, 0, encoded.length), decoded, 0,
+				decoded.length);
+		// Up to 7 padding bits may still read as short codes
+		assertTrue(count >= data.length && count <= data.length + 7, "decoded " + count);
+		assertArrayEquals(data, Arrays.copyOf(decoded, data.length));
+	}
+}
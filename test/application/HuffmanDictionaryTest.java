@@ -0,0 +1,144 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HuffmanDictionaryTest {
+
+	@TempDir
+	Path dir;
+
+	private HuffmanDictionary train(int id) throws IOException {
+		Path first = Samples.write(dir, "first.txt", Samples.text(40_000));
+		Path second = Samples.write(dir, "second.txt", Samples.text(10_000));
+		return HuffmanDictionary.train(id, List.of(first, second), HuffmanTable.MAX_CODE_LENGTH);
+	}
+
+	// Bytes the samples never showed still get a code
+	@Test
+	void trainedTableCoversEveryByte() throws IOException {
+		HuffmanTable table = train(1).getTable();
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			assertTrue(table.contains(symbol), "byte " + symbol);
+		}
+		assertTrue(table.getLength('a') < table.getLength(0));
+	}
+
+	@Test
+	void saveAndLoadKeepTheTable() throws IOException {
+		HuffmanDictionary dictionary = train(7);
+		Path file = dir.resolve("text.hdic");
+		dictionary.save(file);
+
+		HuffmanDictionary loaded = HuffmanDictionary.load(file);
+		assertEquals(7, loaded.getId());
+		assertEquals(dictionary.getChecksum(), loaded.getChecksum());
+		assertArrayEquals(dictionary.getTable().lengths(), loaded.getTable().lengths());
+	}
+
+	@Test
+	void damagedDictionaryFileThrowsIOException() throws IOException {
+		Path file = dir.resolve("text.hdic");
+		train(7).save(file);
+		byte[] data = Files.readAllBytes(file);
+		data[data.length - 1] ^= 1;
+		Files.write(file, data);
+		assertThrows(IOException.class, () -> HuffmanDictionary.load(file));
+
+		Path notADictionary = Samples.write(dir, "text.txt", Samples.text(100));
+		assertThrows(IOException.class, () -> HuffmanDictionary.load(notADictionary));
+	}
+
+	@Test
+	void smallMessagesRoundTripThroughAContext() throws IOException {
+		HuffmanContext context = new HuffmanContext();
+		context.setDictionary(train(1));
+		byte[] all = Samples.text(5000);
+		for (int length : new int[] { 0, 1, 17, 300, 5000 }) {
+			byte[] message = Arrays.copyOfRange(all, all.length - length, all.length);
+			byte[] compressed = new byte[context.getDictionary().maxCompressedLength(length)];
+			int compressedSize = context.compress(message, 0, length, compressed, 0);
+			byte[] restored = new byte[length];
+			assertEquals(length, context.decompress(compressed, 0, compressedSize, restored, 0), "length " + length);
+			assertArrayEquals(message, restored, "length " + length);
+		}
+	}
+
+	@Test
+	void filesRoundTripWithTheirDictionary() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setDictionary(train(1));
+		codec.setBlockSize(8 * 1024);
+		byte[] data = Samples.text(30_000);
+		Path compressed = codec.compress(Samples.write(dir, "input.txt", data)).getOutput();
+
+		assertEquals(1, HuffmanCodec.readHeader(compressed, codec.getDictionary()).getDictionary().getId());
+		Path restored = codec.decompress(compressed).getOutput();
+		assertArrayEquals(data, Files.readAllBytes(restored));
+	}
+
+	// Dictionary inputs are never counted, so a table that leaves a byte out could only write a corrupt message
+	@Test
+	void tableWithoutEveryByteIsRejected() throws IOException {
+		HuffmanTable table = HuffmanTable.fromFrequencies(HuffmanTableTest.frequencies(Samples.text(1000)));
+		assertThrows(IllegalArgumentException.class, () -> new HuffmanDictionary(1, table));
+
+		Path file = dir.resolve("partial.hdic");
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+			out.writeInt(HuffmanDictionary.MAGIC);
+			out.writeInt(1);
+			HuffmanHeader.writeLengths(out, table);
+			out.writeInt(HuffmanDictionary.checksum(table));
+		}
+		assertThrows(IOException.class, () -> HuffmanDictionary.load(file));
+	}
+
+	// With a table that covers every byte, any input fits the size the dictionary promises
+	@Test
+	void anyBytesFitTheMaxCompressedLength() throws IOException {
+		HuffmanContext context = new HuffmanContext();
+		context.setDictionary(train(1));
+		byte[] message = Samples.random(1000);
+		byte[] compressed = new byte[context.getDictionary().maxCompressedLength(message.length)];
+		int size = context.compress(message, 0, message.length, compressed, 0);
+
+		byte[] restored = new byte[message.length];
+		assertEquals(message.length, context.decompress(compressed, 0, size, restored, 0));
+		assertArrayEquals(message, restored);
+	}
+
+	@Test
+	void missingOrWrongDictionaryThrowsIOException() throws IOException {
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setDictionary(train(1));
+		Path compressed = codec.compress(Samples.write(dir, "input.txt", Samples.text(30_000))).getOutput();
+		Path restored = dir.resolve("restored.txt");
+
+		assertThrows(IOException.class, () -> new HuffmanCodec().decompress(compressed, restored));
+		HuffmanCodec other = new HuffmanCodec();
+		other.setDictionary(train(2));
+		assertThrows(IOException.class, () -> other.decompress(compressed, restored));
+		other.setDictionary(HuffmanDictionary.train(1, new long[HuffmanTable.SYMBOLS], 8));
+		assertThrows(IOException.class, () -> other.decompress(compressed, restored));
+
+		HuffmanContext context = new HuffmanContext();
+		context.setDictionary(train(1));
+		byte[] message = Samples.text(100);
+		byte[] compressedMessage = new byte[200];
+		int size = context.compress(message, 0, message.length, compressedMessage, 0);
+		context.setDictionary(train(2));
+		assertThrows(IOException.class, () -> context.decompress(compressedMessage, 0, size, new byte[100], 0));
+	}
+}
@@ -0,0 +1,132 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HuffmanFileTest {
+
+	private static final int BLOCK_SIZE = 20_000;
+
+	@TempDir
+	Path dir;
+
+	// Coded, raw and run blocks, and a short last block
+	private static byte[] mixed() {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.writeBytes(Samples.text(2 * BLOCK_SIZE + 123));
+		data.writeBytes(Samples.random(BLOCK_SIZE));
+		data.writeBytes(Samples.single(BLOCK_SIZE + 77, 'r'));
+		data.writeBytes(Samples.text(BLOCK_SIZE / 3));
+		return data.toByteArray();
+	}
+
+	private Path compress(byte[] data, boolean sharedTable, boolean interleaved, int checkpointInterval)
+			throws IOException {
+		HuffmanCodec codec = new HuffmanCodec();
+		codec.setBlockSize(BLOCK_SIZE);
+		codec.setSharedTable(sharedTable);
+		codec.setInterleaved(interleaved);
+		codec.setCheckpointInterval(checkpointInterval);
+		return codec.compress(Samples.write(dir, "input.bin", data)).getOutput();
+	}
+
+	// Every kind of range, in every layout, with and without a seek index, equals the same slice of the input
+	@Test
+	void rangesEqualTheOriginalBytes() throws IOException {
+		byte[] data = mixed();
+		Random random = new Random(4);
+		for (int checkpointInterval : new int[] { 0, 1000, 4096 }) {
+			for (boolean sharedTable : new boolean[] { true, false }) {
+				for (boolean interleaved : new boolean[] { false, true }) {
+					String name = "interval " + checkpointInterval + ", shared " + sharedTable + ", interleaved "
+							+ interleaved;
+					try (HuffmanFile file = HuffmanFile.open(compress(data, sharedTable, interleaved,
+							checkpointInterval))) {
+						assertEquals(data.length, file.length(), name);
+						assertEquals(checkpointInterval > 0, file.hasSeekIndex(), name);
+						int[][] ranges = { { 0, 0 }, { 0, 1 }, { 0, data.length }, { BLOCK_SIZE - 1, 2 },
+								{ BLOCK_SIZE / 4 - 3, 7 }, { 999, 1 }, { 1000, 1 }, { 4095, 3 },
+								{ BLOCK_SIZE - 5, 3 * BLOCK_SIZE }, { data.length - 1, 1 }, { data.length, 0 } };
+						for (int[] range : ranges) {
+							assertArrayEquals(Arrays.copyOfRange(data, range[0], range[0] + range[1]),
+									file.read(range[0], range[1]), name + ": " + range[0] + "+" + range[1]);
+						}
+						for (int i = 0; i < 50; i++) {
+							int offset = random.nextInt(data.length);
+							int length = random.nextInt(Math.min(5000, data.length - offset) + 1);
+							assertArrayEquals(Arrays.copyOfRange(data, offset, offset + length),
+									file.read(offset, length), name + ": " + offset + "+" + length);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void readStopsAtTheEndOfTheFile() throws IOException {
+		byte[] data = Samples.text(30_000);
+		Path compressed = compress(data, true, false, 1024);
+		assertArrayEquals(Arrays.copyOfRange(data, 29_000, 30_000), new HuffmanCodec().read(compressed, 29_000, 5000));
+	}
+
+	@Test
+	void rangesOutsideTheFileAreRejected() throws IOException {
+		try (HuffmanFile file = HuffmanFile.open(compress(Samples.text(30_000), true, false, 1024))) {
+			assertThrows(IllegalArgumentException.class, () -> file.read(-1, 10));
+			assertThrows(IllegalArgumentException.class, () -> file.read(0, -1));
+			assertThrows(IllegalArgumentException.class, () -> file.read(30_001, 0));
+			assertThrows(IllegalArgumentException.class, () -> file.read(29_995, new byte[10], 0, 10));
+			assertThrows(IndexOutOfBoundsException.class, () -> file.read(0, new byte[10], 5, 10));
+		}
+	}
+
+	// A checkpoint that points outside its block is caught instead of decoding the wrong bytes
+	@Test
+	void checkpointOutsideItsBlockThrowsIOException() throws IOException {
+		byte[] data = Samples.text(50_000);
+		Path compressed = compress(data, true, false, 4096);
+		byte[] bytes = Files.readAllBytes(compressed);
+		// The last checkpoint's bit comes right before the index position and magic number
+		ByteBuffer.wrap(bytes).putLong(bytes.length - 12 - 8, 0);
+		Files.write(compressed, bytes);
+
+		assertThrows(IOException.class, () -> new HuffmanCodec().read(compressed, data.length - 10, 10));
+	}
+
+	@Test
+	void damagedIndexThrowsIOException() throws IOException {
+		Path compressed = compress(Samples.text(50_000), true, false, 4096);
+		byte[] bytes = Files.readAllBytes(compressed);
+		Path damaged = dir.resolve("damaged.huff");
+		Files.write(damaged, Arrays.copyOf(bytes, bytes.length - 1));
+		assertThrows(IOException.class, () -> HuffmanFile.open(damaged));
+
+		bytes[bytes.length - 6] ^= 1;
+		Files.write(damaged, bytes);
+		assertThrows(IOException.class, () -> HuffmanFile.open(damaged));
+	}
+
+	// The CLI reports bad arguments and missing files instead of throwing
+	@Test
+	void cliReadRejectsBadArguments() throws IOException {
+		String compressed = compress(Samples.text(10_000), true, false, 1024).toString();
+		assertFalse(HuffmanCLI.read(new String[] { "read", compressed, "-1", "10" }));
+		assertFalse(HuffmanCLI.read(new String[] { "read", compressed, "0", "ten" }));
+		assertFalse(HuffmanCLI.read(new String[] { "read", compressed, "0", "10", "--bogus" }));
+		assertFalse(HuffmanCLI.read(new String[] { "read", dir.resolve("missing.huff").toString(), "0", "10" }));
+	}
+}
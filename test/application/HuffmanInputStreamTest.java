@@ -0,0 +1,128 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class HuffmanInputStreamTest {
+
+	private static byte[] compress(byte[] data, int writeSize) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (HuffmanOutputStream out = new HuffmanOutputStream(bytes)) {
+			for (int offset = 0; offset < data.length; offset += writeSize) {
+				out.write(data, offset, Math.min(writeSize, data.length - offset));
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] decompress(byte[] compressed) throws IOException {
+		try (InputStream in = new HuffmanInputStream(new ByteArrayInputStream(compressed))) {
+			return in.readAllBytes();
+		}
+	}
+
+	@Test
+	void roundTripsWhateverTheWriteSize() throws IOException {
+		byte[] data = Samples.text(300_000);
+		for (int writeSize : new int[] { 1, 1000, 65_536, 300_000 }) {
+			assertArrayEquals(data, decompress(compress(data, writeSize)), "writes of " + writeSize);
+		}
+		assertArrayEquals(new byte[0], decompress(compress(new byte[0], 1)));
+	}
+
+	@Test
+	void flushMakesWrittenBytesReadable() throws IOException {
+		byte[] data = Samples.text(5000);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HuffmanOutputStream out = new HuffmanOutputStream(bytes);
+		out.write(data);
+		out.flush();
+
+		// No end frame yet, but everything written so far can be read
+		HuffmanInputStream in = new HuffmanInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertArrayEquals(data, in.readNBytes(data.length));
+		assertThrows(EOFException.class, in::read);
+	}
+
+	@Test
+	void finishLeavesTheUnderlyingStreamForWhatFollows() throws IOException {
+		byte[] data = Samples.text(100_000);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HuffmanOutputStream out = new HuffmanOutputStream(bytes);
+		out.write(data);
+		out.finish();
+		bytes.write("trailer".getBytes());
+
+		ByteArrayInputStream underlying = new ByteArrayInputStream(bytes.toByteArray());
+		HuffmanInputStream in = new HuffmanInputStream(underlying);
+		assertArrayEquals(data, in.readAllBytes());
+		assertEquals(data.length, in.getBytesRead());
+		assertArrayEquals("trailer".getBytes(), underlying.readAllBytes());
+	}
+
+	@Test
+	void cutOffStreamThrowsEOFException() throws IOException {
+		byte[] compressed = compress(Samples.text(200_000), 4096);
+		for (int length : new int[] { 3, 20, compressed.length / 2, compressed.length - 1 }) {
+			byte[] cut = Arrays.copyOf(compressed, length);
+			assertThrows(EOFException.class, () -> decompress(cut), "length " + length);
+		}
+	}
+
+	// Bytes already decoded into the chunk must not be handed out after close either
+	@Test
+	void closedStreamThrowsIOException() throws IOException {
+		byte[] data = Samples.text(10_000);
+		HuffmanInputStream in = new HuffmanInputStream(new ByteArrayInputStream(compress(data, data.length)));
+		assertEquals(data[0], in.read());
+		in.close();
+		in.close();
+
+		assertThrows(IOException.class, in::read);
+		assertThrows(IOException.class, () -> in.read(new byte[10], 0, 10));
+		assertThrows(IOException.class, () -> in.read(new byte[10], 0, 0));
+		assertThrows(IOException.class, () -> in.skip(10));
+		assertThrows(IOException.class, in::available);
+	}
+
+	// A frame that claims a huge payload is rejected before the payload is allocated
+	@Test
+	void impossiblePayloadSizeThrowsIOException() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(HuffmanStream.MAGIC);
+		out.writeByte(HuffmanStream.VERSION);
+		out.writeInt(HuffmanStream.DEFAULT_UPDATE_INTERVAL);
+		out.writeByte(HuffmanTable.MAX_CODE_LENGTH);
+		out.writeInt(100);
+		out.writeInt(Integer.MAX_VALUE - 8);
+
+		IOException e = assertThrows(IOException.class, () -> decompress(bytes.toByteArray()));
+		assertEquals("Corrupt frame: 100 bytes in " + (Integer.MAX_VALUE - 8) + ".", e.getMessage());
+	}
+
+	@Test
+	void frameLongerThanAChunkThrowsIOException() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(HuffmanStream.MAGIC);
+		out.writeByte(HuffmanStream.VERSION);
+		out.writeInt(HuffmanStream.MAX_UPDATE_INTERVAL);
+		out.writeByte(HuffmanTable.MAX_CODE_LENGTH);
+		out.writeInt(HuffmanStream.CHUNK_SIZE + 1);
+		out.writeInt(10);
+
+		assertThrows(IOException.class, () -> decompress(bytes.toByteArray()));
+	}
+}
@@ -0,0 +1,107 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HuffmanStreamTest {
+
+	@TempDir
+	Path dir;
+
+	// Text, then noise, then a single byte, so the adaptive table has to follow the data
+	private static byte[] changing() {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.writeBytes(Samples.text(200_000));
+		data.writeBytes(Samples.random(100_000));
+		data.writeBytes(Samples.single(150_000, 'z'));
+		data.writeBytes(Samples.text(30_000));
+		return data.toByteArray();
+	}
+
+	private static byte[] compress(byte[] data, int updateInterval, int maxCodeLength) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		long size = HuffmanStream.compress(new ByteArrayInputStream(data), compressed, updateInterval, maxCodeLength);
+		assertEquals(compressed.size(), size);
+		return compressed.toByteArray();
+	}
+
+	private static byte[] decompress(byte[] compressed) throws IOException {
+		ByteArrayOutputStream restored = new ByteArrayOutputStream();
+		long size = HuffmanStream.decompress(new ByteArrayInputStream(compressed), restored);
+		assertEquals(restored.size(), size);
+		return restored.toByteArray();
+	}
+
+	@Test
+	void roundTripsWithEveryUpdateIntervalAndCodeLength() throws IOException {
+		byte[] data = changing();
+		for (int updateInterval : new int[] { 1000, HuffmanStream.DEFAULT_UPDATE_INTERVAL, 1024 * 1024 }) {
+			for (int maxCodeLength : new int[] { 8, HuffmanTable.MAX_CODE_LENGTH }) {
+				assertArrayEquals(data, decompress(compress(data, updateInterval, maxCodeLength)),
+						"interval " + updateInterval + ", length " + maxCodeLength);
+			}
+		}
+		assertArrayEquals(new byte[0], decompress(compress(new byte[0], 1000, 8)));
+	}
+
+	@Test
+	void compressesText() throws IOException {
+		byte[] data = Samples.text(300_000);
+		assertTrue(compress(data, HuffmanStream.DEFAULT_UPDATE_INTERVAL, HuffmanTable.MAX_CODE_LENGTH).length
+				< data.length * 0.7);
+	}
+
+	@Test
+	void codecRestoresStreamFiles() throws IOException {
+		byte[] data = changing();
+		Path stream = dir.resolve("input.huff");
+		HuffmanCodec codec = new HuffmanCodec();
+		try (OutputStream out = Files.newOutputStream(stream)) {
+			codec.compress(new ByteArrayInputStream(data), out);
+		}
+		assertTrue(HuffmanStream.isStream(stream));
+		assertEquals(data.length, codec.verify(stream).getOriginalSize());
+		assertArrayEquals(data, Files.readAllBytes(codec.decompress(stream).getOutput()));
+	}
+
+	@Test
+	void huffFilesAndShortFilesAreNotStreams() throws IOException {
+		Path huff = new HuffmanCodec().compress(Samples.write(dir, "input.txt", Samples.text(1000))).getOutput();
+		assertFalse(HuffmanStream.isStream(huff));
+		assertFalse(HuffmanStream.isStream(Samples.write(dir, "short.bin", new byte[] { 0x48, 0x55 })));
+	}
+
+	@Test
+	void damagedHeaderThrowsIOException() throws IOException {
+		byte[] compressed = compress(Samples.text(10_000), 1000, 8);
+		// Magic number, version, update interval and maximum code length
+		for (int position : new int[] { 0, 4, 5, 9 }) {
+			byte[] data = compressed.clone();
+			data[position] ^= (byte) 0x80;
+			assertThrows(IOException.class, () -> decompress(data), "byte " + position);
+		}
+	}
+
+	@Test
+	void invalidSettingsAreRejected() {
+		byte[] data = new byte[10];
+		assertThrows(IllegalArgumentException.class, () -> compress(data, 0, 8));
+		assertThrows(IllegalArgumentException.class,
+				() -> compress(data, HuffmanStream.MAX_UPDATE_INTERVAL + 1, 8));
+		assertThrows(IllegalArgumentException.class,
+				() -> compress(data, 1000, HuffmanTable.MAX_CODE_LENGTH + 1));
+	}
+}
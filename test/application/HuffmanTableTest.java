@@ -0,0 +1,215 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class HuffmanTableTest {
+
+	// The depth of every leaf, which is the length of its code before any limit
+	private static void depths(BinaryTree tree, int depth, int[] depths) {
+		if (tree.left == null && tree.right == null) {
+			depths[tree.ch & 0xFF] = depth;
+			return;
+		}
+		depths(tree.left, depth + 1, depths);
+		depths(tree.right, depth + 1, depths);
+	}
+
+	// Fibonacci counts give the deepest possible Huffman tree, one level per symbol
+	private static long[] fibonacci(int symbols) {
+		long[] frequencies = new long[HuffmanTable.SYMBOLS];
+		long previous = 0;
+		long current = 1;
+		for (int symbol = 0; symbol < symbols; symbol++) {
+			frequencies['A' + symbol] = current;
+			long next = previous + current;
+			previous = current;
+			current = next;
+		}
+		return frequencies;
+	}
+
+	// Sum of 2^-length over all codes, scaled by 2^MAX_CODE_LENGTH; a prefix code never exceeds 1
+	private static long kraft(HuffmanTable table) {
+		long sum = 0;
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			if (table.getLength(symbol) > 0) {
+				sum += 1L << (HuffmanTable.MAX_CODE_LENGTH - table.getLength(symbol));
+			}
+		}
+		return sum;
+	}
+
+	@Test
+	void lengthsAreTheDepthsOfTheTree() {
+		BinaryTree tree = FileCompressor.buildHuffmanTree(frequencies(Samples.text(100_000)));
+		HuffmanTable table = HuffmanTable.fromTree(tree);
+
+		int[] depths = new int[HuffmanTable.SYMBOLS];
+		depths(tree, 0, depths);
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			assertEquals(depths[symbol], table.getLength(symbol), "symbol " + symbol);
+		}
+		assertEquals(1L << HuffmanTable.MAX_CODE_LENGTH, kraft(table));
+	}
+
+	@Test
+	void limitedLengthsStayWithinTheLimitAndFormACompleteCode() {
+		long[] frequencies = fibonacci(40);
+		long previousBits = Long.MAX_VALUE;
+		for (int limit = 6; limit <= HuffmanTable.MAX_CODE_LENGTH; limit++) {
+			HuffmanTable table = HuffmanTable.fromFrequencies(frequencies, limit);
+			assertEquals(limit, table.getMaxLength(), "limit " + limit);
+			assertEquals(1L << HuffmanTable.MAX_CODE_LENGTH, kraft(table), "limit " + limit);
+			assertTrue(table.getLengthLimitLoss() > 0, "limit " + limit);
+
+			// A looser limit never costs more bits
+			long bits = HuffmanTable.encodedBits(table.lengths(), frequencies);
+			assertTrue(bits <= previousBits, "limit " + limit);
+			previousBits = bits;
+		}
+	}
+
+	// Against every length assignment of a small alphabet, package-merge finds the cheapest one
+	@Test
+	void packageMergeIsOptimal() {
+		long[] weights = { 1, 1, 2, 3, 5, 8, 13 };
+		long[] frequencies = new long[HuffmanTable.SYMBOLS];
+		System.arraycopy(weights, 0, frequencies, 0, weights.length);
+		for (int limit = 3; limit <= 6; limit++) {
+			int[] lengths = HuffmanTable.packageMerge(frequencies, limit);
+			assertEquals(bestCost(weights, limit, new int[weights.length], 0),
+					HuffmanTable.encodedBits(lengths, frequencies), "limit " + limit);
+		}
+	}
+
+	private static long bestCost(long[] weights, int limit, int[] lengths, int symbol) {
+		if (symbol == weights.length) {
+			double kraft = 0;
+			long cost = 0;
+			for (int i = 0; i < weights.length; i++) {
+				kraft += Math.pow(2, -lengths[i]);
+				cost += weights[i] * lengths[i];
+			}
+			return kraft <= 1 ? cost : Long.MAX_VALUE;
+		}
+		long best = Long.MAX_VALUE;
+		for (int length = 1; length <= limit; length++) {
+			lengths[symbol] = length;
+			best = Math.min(best, bestCost(weights, limit, lengths, symbol + 1));
+		}
+		return best;
+	}
+
+	@Test
+	void unlimitedTreeIsNotChanged() {
+		long[] frequencies = new long[HuffmanTable.SYMBOLS];
+		frequencies['a'] = 4;
+		frequencies['b'] = 2;
+		frequencies['c'] = 1;
+		frequencies['d'] = 1;
+		HuffmanTable table = HuffmanTable.fromFrequencies(frequencies);
+		assertEquals(1, table.getLength('a'));
+		assertEquals(2, table.getLength('b'));
+		assertEquals(3, table.getLength('c'));
+		assertEquals(3, table.getLength('d'));
+		assertEquals(0, table.getLengthLimitLoss());
+	}
+
+	@Test
+	void singleSymbolGetsOneBit() {
+		long[] frequencies = new long[HuffmanTable.SYMBOLS];
+		frequencies[7] = 1000;
+		assertEquals(1, HuffmanTable.fromFrequencies(frequencies).getLength(7));
+		assertEquals(1, HuffmanTable.packageMerge(frequencies, 8)[7]);
+	}
+
+	// Codes are handed out in order of length, then of byte value
+	@Test
+	void fromLengthsBuildsCanonicalCodes() {
+		int[] lengths = new int[HuffmanTable.SYMBOLS];
+		lengths['a'] = 2;
+		lengths['b'] = 1;
+		lengths['c'] = 3;
+		lengths['d'] = 3;
+		HuffmanTable table = HuffmanTable.fromLengths(lengths);
+		assertEquals("0", table.codeString('b'));
+		assertEquals("10", table.codeString('a'));
+		assertEquals("110", table.codeString('c'));
+		assertEquals("111", table.codeString('d'));
+	}
+
+	@Test
+	void invalidLengthsAreRejected() {
+		int[] lengths = new int[HuffmanTable.SYMBOLS];
+		Arrays.fill(lengths, 0, 3, 1);
+		assertThrows(IllegalArgumentException.class, () -> HuffmanTable.fromLengths(lengths));
+		assertThrows(IllegalArgumentException.class, () -> HuffmanTable.fromLengths(new int[10]));
+		assertThrows(IllegalArgumentException.class, () -> HuffmanTable.fromFrequencies(fibonacci(3), 0));
+		assertThrows(IllegalArgumentException.class,
+				() -> HuffmanTable.fromFrequencies(fibonacci(3), HuffmanTable.MAX_CODE_LENGTH + 1));
+	}
+
+	// Data skewed so that its Huffman codes would be 30 bits long comes back under the shortest limit
+	@Test
+	void skewedDataRoundTripsUnderTheLimit() throws IOException {
+		long[] frequencies = fibonacci(30);
+		int size = (int) Arrays.stream(frequencies).sum();
+		byte[] data = new byte[size];
+		int position = 0;
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			for (long i = 0; i < frequencies[symbol]; i++) {
+				data[position++] = (byte) symbol;
+			}
+		}
+
+		HuffmanTable table = HuffmanTable.fromFrequencies(frequencies, 8);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		new FileCompressor().compress(new ByteArrayInputStream(data), table, compressed);
+		ByteArrayOutputStream restored = new ByteArrayOutputStream();
+		FileDecompressor.decompress(new ByteArrayInputStream(compressed.toByteArray()), table, size, restored);
+		assertArrayEquals(data, restored.toByteArray());
+	}
+
+	// The header keeps the file's extension and length and rebuilds the same codes from the lengths
+	@Test
+	void headerRoundTripsTheCodeLengths() throws IOException {
+		HuffmanTable table = HuffmanTable.fromFrequencies(frequencies(Samples.random(10_000)));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new HuffmanHeader("txt", 10_000, 4096, table).write(new DataOutputStream(out));
+		byte[] bytes = out.toByteArray();
+		assertTrue(bytes.length <= 4 + 1 + 1 + 8 + 5 + 4 + 2 + 128, "header of " + bytes.length + " bytes");
+
+		HuffmanHeader header = HuffmanHeader.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+		assertEquals("txt", header.getExtension());
+		assertEquals(10_000, header.getOriginalLength());
+		assertEquals(4096, header.getBlockSize());
+		for (int symbol = 0; symbol < HuffmanTable.SYMBOLS; symbol++) {
+			assertEquals(table.getLength(symbol), header.getTable().getLength(symbol), "symbol " + symbol);
+			assertEquals(table.getCode(symbol), header.getTable().getCode(symbol), "symbol " + symbol);
+		}
+
+		bytes[0] = 'X';
+		assertThrows(IOException.class,
+				() -> HuffmanHeader.read(new DataInputStream(new ByteArrayInputStream(bytes))));
+	}
+
+	static int[] frequencies(byte[] data) {
+		int[] frequencies = new int[HuffmanTable.SYMBOLS];
+		for (byte b : data) {
+			frequencies[b & 0xFF]++;
+		}
+		return frequencies;
+	}
+}
@@ -0,0 +1,42 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+// Inputs shared by the tests, generated from fixed seeds so every failure can be reproduced
+final class Samples {
+
+	private Samples() {
+	}
+
+	// Lines of words over a small, skewed alphabet, like a log file
+	static byte[] text(int size) {
+		Random random = new Random(1);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			int letter = (int) (26 * Math.pow(random.nextDouble(), 3));
+			data[i] = (byte) (random.nextInt(40) == 0 ? '\n' : random.nextInt(6) == 0 ? ' ' : 'a' + letter);
+		}
+		return data;
+	}
+
+	// Close to incompressible
+	static byte[] random(int size) {
+		byte[] data = new byte[size];
+		new Random(2).nextBytes(data);
+		return data;
+	}
+
+	static byte[] single(int size, int value) {
+		byte[] data = new byte[size];
+		Arrays.fill(data, (byte) value);
+		return data;
+	}
+
+	static Path write(Path dir, String name, byte[] data) throws IOException {
+		return Files.write(dir.resolve(name), data);
+	}
+}